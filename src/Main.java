@@ -3,17 +3,24 @@ import interfaces.ViewSubscriber;
 
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Map;
 
+import javax.swing.SwingUtilities;
+
 import knowledgebase.Belief;
+import knowledgebase.DatasetStorage;
 import knowledgebase.Fuseki;
 import knowledgebase.Justification;
 import knowledgebase.Reasoner;
 import knowledgebase.Tms;
 
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RiotException;
 import org.apache.log4j.varia.NullAppender;
 
 import ui.App;
@@ -27,21 +34,79 @@ public class Main implements ViewSubscriber, ModelSubscriber
     private final Reasoner reasoner;
     private final Tms tms;
 
+    /**
+     * Directory of the journal, the reasoner snapshot and the dbpedia cache,
+     * or null to keep nothing on disk, as with the in-memory db.
+     */
+    private final File state;
+
+    /**
+     * Reasoner state of the last run, to start from if the knowledge base has
+     * not changed since, or null if it is not kept.
+     */
+    private final File snapshot;
+
+    /**
+     * Window of mission elapsed time, in seconds, the annotations of a belief
+     * are shown for.
+     */
+    private long windowFrom = 0;
+    private long windowTo = Long.MAX_VALUE;
+
+    /**
+     * Set once the app has started to shut down.
+     */
+    private volatile boolean shutDown = false;
+
     /**
      * Set up the app.
      */
     public Main() {
         org.apache.log4j.BasicConfigurator.configure(new NullAppender());
-        db = new Fuseki("http://localhost:3030/info216/query",
-                "http://localhost:3030/info216/data");
+        db = createDb();
+        // An in-memory db starts empty on every run, and so should
+        // everything derived from it.
+        state = Boolean.getBoolean("sdss.memory") ? null : new File("journal");
+        snapshot = state == null ? null : new File(state, "reasoner.snapshot");
         reasoner = new Reasoner(db);
-        tms = new Tms(db);
+        // Keep a local journal of the knowledge base only if the sdss.journal
+        // property is true. Changes it replayed may not have reached the db,
+        // so they are stored before anything else.
+        if (state != null && Boolean.getBoolean("sdss.journal")) {
+            tms = new Tms(db, state);
+            if (tms.hasReplayedChanges()) {
+                tms.changed();
+            }
+        } else {
+            tms = new Tms(db);
+        }
 
-        tms.changed();
+        // Store edits in the background, and make sure the last ones are
+        // stored before the app exits.
+        tms.enableWriteBehind(200);
+
+        // Fetch from dbpedia in the background, or from the endpoint named by
+        // the sdss.dbpedia property, and update once the statements are in.
+        tms.enableEnrichment(System.getProperty("sdss.dbpedia", Tms.DBPEDIA),
+                state == null ? null : new File(state, "dbpedia.cache"),
+                r -> SwingUtilities.invokeLater(() -> {
+                    r.run();
+                    updateReasoner();
+                }));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdownNow));
 
         ui = new App();
         ui.addSubscriber(this);
 
+        // Closing the window exits from the event dispatch thread, which
+        // then can not run the shutdown hook's work, so shut down first.
+        ui.frame.addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e)
+            {
+                shutdown();
+            }
+        });
+
         ui.frame.addComponentListener(new ComponentAdapter() {
             public void componentResized(ComponentEvent e)
             {
@@ -54,7 +119,8 @@ public class Main implements ViewSubscriber, ModelSubscriber
      * Render the app.
      * 
      * @param args
-     *            (not supported)
+     *            Turtle or N-Triples files to import into the knowledge base
+     *            before the first update
      */
     public static void main(String[] args)
     {
@@ -62,12 +128,80 @@ public class Main implements ViewSubscriber, ModelSubscriber
         System.setProperty("swing.aatext", "true");
 
         Main app = new Main();
-        app.reasoner.update(app.tms.getKnowledgeBase());
+        for (String path : args) {
+            try {
+                app.tms.importFile(path);
+            } catch (RiotException e) {
+                System.out.println("Nothing imported from " + path + ": "
+                        + e.getMessage());
+            }
+        }
+        // Skip inference if the reasoner was saved for this knowledge base.
+        if (app.snapshot == null
+                || !app.reasoner.restoreSnapshot(app.snapshot,
+                        app.tms.getKnowledgeBase())) {
+            app.reasoner.update(app.tms.getKnowledgeBase());
+        }
         app.update();
         app.render();
         app.ui.frame.setVisible(true);
     }
 
+    /**
+     * The db is the fuseki server, unless the sdss.tdb property names the
+     * directory of an embedded TDB database, or the sdss.memory property is
+     * true, in which case it is kept in memory, and nothing else is kept on
+     * disk either.
+     */
+    private static Fuseki createDb()
+    {
+        if (Boolean.getBoolean("sdss.memory")) {
+            return new Fuseki(DatasetStorage.memory());
+        }
+        String tdb = System.getProperty("sdss.tdb");
+        if (tdb != null) {
+            return new Fuseki(DatasetStorage.tdb(tdb));
+        }
+        return new Fuseki("http://localhost:3030/info216/query",
+                "http://localhost:3030/info216/data",
+                "http://localhost:3030/info216/update");
+    }
+
+    /**
+     * Shut down on the event dispatch thread, which owns the knowledge base
+     * and the reasoner, unless the window was closed and did so already.
+     * Called by the shutdown hook.
+     */
+    private void shutdownNow()
+    {
+        if (shutDown) {
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(this::shutdown);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            System.out.println("Could not shut down: " + e.getCause());
+        }
+    }
+
+    /**
+     * Snapshot the reasoner and store pending changes. Runs on the event
+     * dispatch thread, once.
+     */
+    private void shutdown()
+    {
+        if (shutDown) {
+            return;
+        }
+        shutDown = true;
+        if (snapshot != null) {
+            reasoner.saveSnapshot(snapshot, tms.getKnowledgeBase());
+        }
+        tms.shutdown();
+    }
+
     private void render()
     {
         renderGraph();
@@ -77,10 +211,9 @@ public class Main implements ViewSubscriber, ModelSubscriber
     private void render(Belief b)
     {
         // Render a Belief.
-        List<Statement> all = tms.getStatements();
-        all.addAll(tms.getAuxiliaryStatements());
-        ui.render(b, reasoner.getStatus(b), reasoner.getStatements(b), all);
-        tms.getKnowledgeBase().write(System.out, "NTRIPLES");
+        ui.render(b, reasoner.getStatus(b),
+                tms.getAnnotations(b).withTimeWindow(windowFrom, windowTo),
+                tms.getStatementSource());
     }
 
     private void render(Justification j)
@@ -88,7 +221,7 @@ public class Main implements ViewSubscriber, ModelSubscriber
         // Render a Justification.
         renderGraph();
         ui.render(j, reasoner.getInList(j), reasoner.getOutList(j),
-                reasoner.getStatus(j), reasoner.getBeliefStatements());
+                reasoner.getStatus(j), reasoner.getStatementSource());
     }
 
     private void renderGraph()
@@ -132,16 +265,19 @@ public class Main implements ViewSubscriber, ModelSubscriber
     @Override
     public void handleBeliefTypeChanged(Belief b, Resource newType)
     {
-        if (newType == JTMS.BELIEF) {
-            tms.unpremise(b.getResource().toString());
-            tms.uncontradict(b.getResource().toString());
-        } else if (newType == JTMS.CONTRADICTION) {
-            tms.contradict(b.getResource().toString());
-            tms.unpremise(b.getResource().toString());
-        } else if (newType == JTMS.PREMISE) {
-            tms.premise(b.getResource().toString());
-            tms.uncontradict(b.getResource().toString());
-        }
+        // Store both changes at once.
+        tms.batch(() -> {
+            if (newType == JTMS.BELIEF) {
+                tms.unpremise(b.getResource().toString());
+                tms.uncontradict(b.getResource().toString());
+            } else if (newType == JTMS.CONTRADICTION) {
+                tms.contradict(b.getResource().toString());
+                tms.unpremise(b.getResource().toString());
+            } else if (newType == JTMS.PREMISE) {
+                tms.premise(b.getResource().toString());
+                tms.uncontradict(b.getResource().toString());
+            }
+        });
 
         updateReasoner();
         reasoner.propagateBelief(b);
@@ -199,7 +335,7 @@ public class Main implements ViewSubscriber, ModelSubscriber
         if (ui.getViewType() == ViewType.JUSTIFICATION) {
             Justification j = justification;
             ui.render(j, reasoner.getInList(j), reasoner.getOutList(j),
-                    reasoner.getStatus(j), tms.getStatements());
+                    reasoner.getStatus(j), tms.getStatementSource());
         }
     }
 
@@ -278,6 +414,15 @@ public class Main implements ViewSubscriber, ModelSubscriber
         render(b);
     }
 
+    @Override
+    public void handleTimeWindow(Belief b, long from, long to)
+    {
+        // Show the annotations of the window, then render.
+        windowFrom = from;
+        windowTo = to;
+        render(b);
+    }
+
     @Override
     public void handleRemoveBelief(Belief b, ViewType type)
     {
@@ -44,4 +44,6 @@ public interface ViewSubscriber
             ViewType type);
 
     public void handleAddDoc(Belief b, List<String> triple, ViewType type);
+
+    public void handleTimeWindow(Belief b, long from, long to);
 }
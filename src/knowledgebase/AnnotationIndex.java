@@ -0,0 +1,153 @@
+package knowledgebase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDFS;
+
+/**
+ * The annotations of each resource: the statements about everything it links
+ * to with rdfs:seeAlso. Built on the first lookup from a model, and then kept
+ * up to date by listening to it, so the annotations of a resource are read
+ * without walking its links, at a cost that only depends on how many
+ * annotations it has. Removing statements in bulk, or the source supplying a
+ * new model, has the index built again on the next lookup.
+ *
+ * The annotations of each resource are kept in a model of their own, so they
+ * can be filtered and paged through its indexes.
+ *
+ */
+class AnnotationIndex extends ModelIndex
+{
+    private final Supplier<Model> source;
+
+    /**
+     * Annotations, by annotated resource.
+     */
+    private final Map<Resource, Model> annotations = new HashMap<Resource, Model>();
+
+    /**
+     * Resources linking to each seeAlso target.
+     */
+    private final Map<Resource, Set<Resource>> linkedFrom = new HashMap<Resource, Set<Resource>>();
+
+    /**
+     * @param source
+     *            supplying the model to index. It may supply a new model, in
+     *            which case the index is built again.
+     */
+    public AnnotationIndex(Supplier<Model> source) {
+        super(Collections.singletonList(source));
+        this.source = source;
+    }
+
+    /**
+     * @return the annotations of r, which must not be changed
+     */
+    public synchronized Model get(Resource r)
+    {
+        check();
+        Model m = annotations.get(r);
+        return m == null ? ModelFactory.createDefaultModel() : m;
+    }
+
+    @Override
+    public synchronized void addedStatement(Statement s)
+    {
+        if (s.getPredicate().equals(RDFS.seeAlso) && s.getObject().isResource()) {
+            link(s.getSubject(), s.getResource());
+        }
+        Set<Resource> from = linkedFrom.get(s.getSubject());
+        if (from != null) {
+            for (Resource r : from) {
+                annotationsOf(r).add(s);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removedStatement(Statement s)
+    {
+        if (s.getPredicate().equals(RDFS.seeAlso) && s.getObject().isResource()) {
+            unlink(s.getSubject(), s.getResource());
+        }
+        Set<Resource> from = linkedFrom.get(s.getSubject());
+        if (from != null) {
+            for (Resource r : from) {
+                Model m = annotations.get(r);
+                if (m != null) {
+                    m.remove(s);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        annotations.clear();
+        linkedFrom.clear();
+    }
+
+    /**
+     * Only the links are read when building, the annotations are read
+     * through them.
+     */
+    @Override
+    protected StmtIterator statements(Model m)
+    {
+        return m.listStatements(null, RDFS.seeAlso, (RDFNode) null);
+    }
+
+    private void link(Resource r, Resource target)
+    {
+        Set<Resource> from = linkedFrom.get(target);
+        if (from == null) {
+            from = new LinkedHashSet<Resource>();
+            linkedFrom.put(target, from);
+        }
+        if (!from.add(r)) {
+            return;
+        }
+        annotationsOf(r).add(
+                source.get().listStatements(target, null, (RDFNode) null));
+    }
+
+    private void unlink(Resource r, Resource target)
+    {
+        Set<Resource> from = linkedFrom.get(target);
+        if (from == null || !from.remove(r)) {
+            return;
+        }
+        if (from.isEmpty()) {
+            linkedFrom.remove(target);
+        }
+        Model m = annotations.get(r);
+        if (m != null) {
+            m.removeAll(target, null, (RDFNode) null);
+            if (m.isEmpty()) {
+                annotations.remove(r);
+            }
+        }
+    }
+
+    private Model annotationsOf(Resource r)
+    {
+        Model m = annotations.get(r);
+        if (m == null) {
+            m = ModelFactory.createDefaultModel();
+            annotations.put(r, m);
+        }
+        return m;
+    }
+}
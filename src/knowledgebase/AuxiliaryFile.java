@@ -0,0 +1,79 @@
+package knowledgebase;
+
+import java.io.File;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.graph.GraphReadOnly;
+
+/**
+ * A read-only copy of an RDF file in memory. The file is parsed on first use,
+ * and parsed again only when its modification time or length changes, so
+ * lookups are served from the indexes of the in-memory graph instead of the
+ * file.
+ *
+ * A file that does not exist reads as an empty model.
+ *
+ */
+class AuxiliaryFile
+{
+    private final File file;
+
+    private Model model;
+    private long modified = -1;
+    private long length = -1;
+
+    /**
+     * @param path
+     *            of the file, whose extension tells its syntax
+     */
+    public AuxiliaryFile(String path) {
+        file = new File(path);
+    }
+
+    /**
+     * @return the statements of the file, which can not be changed
+     */
+    public synchronized Model getModel()
+    {
+        if (model == null || file.lastModified() != modified
+                || file.length() != length) {
+            load();
+        }
+        return model;
+    }
+
+    /**
+     * @param s
+     *            subject to match, or null for any
+     * @param p
+     *            predicate to match, or null for any
+     * @return the matching statements of the file
+     */
+    public StmtIterator listStatements(Resource s, Property p)
+    {
+        return getModel().listStatements(s, p, (Resource) null);
+    }
+
+    private void load()
+    {
+        modified = file.lastModified();
+        length = file.length();
+        Model m = ModelFactory.createDefaultModel();
+        if (file.exists()) {
+            long start = System.currentTimeMillis();
+            RDFDataMgr.read(m, file.getPath());
+            System.out.println("Loaded " + m.size() + " statements from "
+                    + file + " in " + (System.currentTimeMillis() - start)
+                    + " ms");
+        } else {
+            System.out.println("No auxiliary data in " + file);
+        }
+        model = ModelFactory.createModelForGraph(new GraphReadOnly(m
+                .getGraph()));
+    }
+}
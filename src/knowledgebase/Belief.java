@@ -16,13 +16,33 @@ import vocabs.JTMS;
  */
 public class Belief extends Base
 {
-    public Belief(Resource belief) {
+    private final int id;
+    private final BeliefTable table;
+
+    Belief(Resource belief, int id, BeliefTable table) {
         super(belief);
+        this.id = id;
+        this.table = table;
+    }
+
+    /**
+     * @return dense id of this belief in the reasoner. Once the reasoner has
+     *         built its beliefs again, the id may stand for another belief.
+     */
+    public int getId()
+    {
+        return id;
     }
 
+    /**
+     * @return whether the belief of this resource is held, even if the
+     *         reasoner has built its beliefs again since this one was handed
+     *         out
+     */
     public boolean getHeld()
     {
-        return r.getProperty(JTMS.HAS_STATE).getBoolean();
+        Belief b = table.current(this);
+        return b != null && table.getLabel(b.id);
     }
 
     public boolean isPremise()
@@ -0,0 +1,218 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * Interns the beliefs and justifications of the reasoner to dense integer ids,
+ * and keeps the label of every belief as a bit. Ids are handed out in the
+ * order resources are interned, starting at zero, and are only reused after a
+ * clear. Beliefs and justifications interned before a clear are stale, as
+ * their ids may now stand for other resources; current finds the ones that
+ * replaced them.
+ *
+ * Labels may be read and set from several threads at once, as long as no
+ * resources are interned or cleared meanwhile.
+ *
+ */
+class BeliefTable
+{
+    private final Map<Resource, Integer> beliefIds = new HashMap<Resource, Integer>();
+    private final List<Belief> beliefs = new ArrayList<Belief>();
+
+    private final Map<Resource, Integer> justificationIds = new HashMap<Resource, Integer>();
+    private final List<Justification> justifications = new ArrayList<Justification>();
+
+    /**
+     * Set for every belief that is held.
+     */
+    private final BitSet held = new BitSet();
+
+    /**
+     * Set for every belief that has been given a label at all.
+     */
+    private final BitSet labelled = new BitSet();
+
+    /**
+     * Set for every belief whose label changed since the last call to
+     * takeChanged.
+     */
+    private final BitSet changed = new BitSet();
+
+    /**
+     * @param r
+     *            belief resource
+     * @return the belief of r, which is created if it was not interned yet
+     */
+    public Belief internBelief(Resource r)
+    {
+        Integer id = beliefIds.get(r);
+        if (id != null) {
+            return beliefs.get(id);
+        }
+        Belief b = new Belief(r, beliefs.size(), this);
+        beliefIds.put(r, b.getId());
+        beliefs.add(b);
+        return b;
+    }
+
+    /**
+     * @param r
+     *            justification resource
+     * @return the justification of r, which is created if it was not interned
+     *         yet
+     */
+    public Justification internJustification(Resource r)
+    {
+        Integer id = justificationIds.get(r);
+        if (id != null) {
+            return justifications.get(id);
+        }
+        Justification j = new Justification(r, justifications.size());
+        justificationIds.put(r, j.getId());
+        justifications.add(j);
+        return j;
+    }
+
+    /**
+     * @return the belief of r, or null if it is not interned
+     */
+    public Belief getBelief(Resource r)
+    {
+        Integer id = beliefIds.get(r);
+        return id == null ? null : beliefs.get(id);
+    }
+
+    public Belief getBelief(int id)
+    {
+        return beliefs.get(id);
+    }
+
+    /**
+     * @return the justification of r, or null if it is not interned
+     */
+    public Justification getJustification(Resource r)
+    {
+        Integer id = justificationIds.get(r);
+        return id == null ? null : justifications.get(id);
+    }
+
+    public Justification getJustification(int id)
+    {
+        return justifications.get(id);
+    }
+
+    /**
+     * @return b, or if b is stale, the belief interned for its resource
+     *         since, which is null if there is none
+     */
+    public Belief current(Belief b)
+    {
+        int id = b.getId();
+        if (id < beliefs.size() && beliefs.get(id) == b) {
+            return b;
+        }
+        return getBelief(b.getResource());
+    }
+
+    /**
+     * @return j, or if j is stale, the justification interned for its
+     *         resource since, which is null if there is none
+     */
+    public Justification current(Justification j)
+    {
+        int id = j.getId();
+        if (id < justifications.size() && justifications.get(id) == j) {
+            return j;
+        }
+        return getJustification(j.getResource());
+    }
+
+    public boolean containsBelief(Resource r)
+    {
+        return beliefIds.containsKey(r);
+    }
+
+    public boolean containsJustification(Resource r)
+    {
+        return justificationIds.containsKey(r);
+    }
+
+    /**
+     * @return all interned beliefs, ordered by id
+     */
+    public List<Belief> getBeliefs()
+    {
+        return new ArrayList<Belief>(beliefs);
+    }
+
+    /**
+     * @return all interned justifications, ordered by id
+     */
+    public List<Justification> getJustifications()
+    {
+        return new ArrayList<Justification>(justifications);
+    }
+
+    public int beliefCount()
+    {
+        return beliefs.size();
+    }
+
+    public int justificationCount()
+    {
+        return justifications.size();
+    }
+
+    public synchronized boolean getLabel(int id)
+    {
+        return held.get(id);
+    }
+
+    public synchronized boolean hasLabel(int id)
+    {
+        return labelled.get(id);
+    }
+
+    public synchronized void setLabel(int id, boolean state)
+    {
+        held.set(id, state);
+        labelled.set(id);
+        changed.set(id);
+    }
+
+    /**
+     * @return ids of the beliefs whose label changed since the last call,
+     *         which are then forgotten
+     */
+    public synchronized BitSet takeChanged()
+    {
+        BitSet c = (BitSet) changed.clone();
+        changed.clear();
+        return c;
+    }
+
+    /**
+     * @return a copy of the labels, indexed by belief id
+     */
+    public synchronized BitSet snapshot()
+    {
+        return (BitSet) held.clone();
+    }
+
+    public void clear()
+    {
+        beliefIds.clear();
+        beliefs.clear();
+        justificationIds.clear();
+        justifications.clear();
+        held.clear();
+        labelled.clear();
+        changed.clear();
+    }
+}
@@ -0,0 +1,92 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Receives the triples of a streaming parser into a scratch graph, and moves
+ * them into a graph once the whole file is parsed. A file that can not be
+ * parsed to the end leaves the graph as it was, as the scratch graph is just
+ * dropped. Triples are moved in chunks, and every chunk is removed from the
+ * scratch graph as it is moved, so the parsed file is never held in memory
+ * twice.
+ *
+ * The move is announced to the listeners of the graph as a bulk read, so
+ * change logs only note that the graph changed in bulk, rather than holding a
+ * copy of every triple.
+ *
+ */
+class BulkImport extends StreamRDFBase
+{
+    private final Graph graph;
+    private final int chunkSize;
+    private final Graph scratch = GraphFactory.createGraphMem();
+    private long count = 0;
+
+    /**
+     * @param graph
+     *            to add triples to
+     * @param chunkSize
+     *            number of triples added at once
+     */
+    public BulkImport(Graph graph, int chunkSize) {
+        this.graph = graph;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void triple(Triple triple)
+    {
+        scratch.add(triple);
+        count++;
+    }
+
+    @Override
+    public void quad(Quad quad)
+    {
+        triple(quad.asTriple());
+    }
+
+    /**
+     * @return number of triples read so far
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Move the parsed triples into the graph, between GraphEvents.startRead
+     * and finishRead.
+     */
+    public void commit()
+    {
+        graph.getEventManager().notifyEvent(graph, GraphEvents.startRead);
+        try {
+            List<Triple> chunk = new ArrayList<Triple>(chunkSize);
+            while (!scratch.isEmpty()) {
+                ExtendedIterator<Triple> it = scratch.find(Node.ANY, Node.ANY,
+                        Node.ANY);
+                while (it.hasNext() && chunk.size() < chunkSize) {
+                    chunk.add(it.next());
+                }
+                it.close();
+                GraphUtil.add(graph, chunk);
+                GraphUtil.delete(scratch, chunk);
+                chunk.clear();
+            }
+        } finally {
+            graph.getEventManager().notifyEvent(graph, GraphEvents.finishRead);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package knowledgebase;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.modify.request.QuadDataAcc;
+import org.apache.jena.sparql.modify.request.UpdateDataDelete;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Records the statements added to and removed from a model since the log was
+ * last cleared. A statement that is added and then removed again (or the other
+ * way around) cancels out, so the log always holds the net change.
+ *
+ * Statements removed in bulk, through removeAll, are not reported one by one,
+ * so the log can only tell that such a removal happened. Statements read in
+ * bulk, between GraphEvents.startRead and finishRead, are not logged one by
+ * one either, so the log does not hold a copy of a large import.
+ *
+ * The log may be filled and read from different threads. A reader that needs
+ * several calls to see the same state should hold the log while making them.
+ *
+ */
+class ChangeLog extends StatementListener
+{
+    private final Model added = ModelFactory.createDefaultModel();
+    private final Model removed = ModelFactory.createDefaultModel();
+
+    /**
+     * Whether statements were removed or read in bulk since the last clear.
+     */
+    private boolean bulk = false;
+
+    /**
+     * Number of bulk reads going on.
+     */
+    private int reading = 0;
+
+    @Override
+    public synchronized void addedStatement(Statement s)
+    {
+        if (reading > 0) {
+            return;
+        }
+        if (removed.contains(s)) {
+            removed.remove(s);
+        } else {
+            added.add(s);
+        }
+    }
+
+    @Override
+    public synchronized void removedStatement(Statement s)
+    {
+        if (reading > 0) {
+            return;
+        }
+        if (added.contains(s)) {
+            added.remove(s);
+        } else {
+            removed.add(s);
+        }
+    }
+
+    @Override
+    public synchronized void notifyEvent(Model m, Object event)
+    {
+        if (event == GraphEvents.startRead) {
+            // The statements logged so far are of no use either.
+            reading++;
+            bulk = true;
+            added.removeAll();
+            removed.removeAll();
+        } else if (event == GraphEvents.finishRead) {
+            reading--;
+        } else if (event == GraphEvents.removeAll
+                || event instanceof GraphEvents
+                && "remove".equals(((GraphEvents) event).getTitle())) {
+            bulk = true;
+        }
+    }
+
+    /**
+     * @return whether statements were removed or read in bulk since the last
+     *         clear, which are missing from the log. Applying the log does not
+     *         then make the same changes.
+     */
+    public synchronized boolean hasBulkChange()
+    {
+        return bulk;
+    }
+
+    /**
+     * @return statements added since the last clear
+     */
+    public Model getAdded()
+    {
+        return added;
+    }
+
+    /**
+     * @return statements removed since the last clear
+     */
+    public Model getRemoved()
+    {
+        return removed;
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty() && !bulk;
+    }
+
+    /**
+     * @return every resource that is the subject or object of a changed
+     *         statement
+     */
+    public synchronized Set<Resource> getTouched()
+    {
+        Set<Resource> touched = new LinkedHashSet<Resource>();
+        collect(added, touched);
+        collect(removed, touched);
+        return touched;
+    }
+
+    /**
+     * @return whether some changed statement has a blank node, which can not
+     *         be deleted through DELETE DATA
+     */
+    public synchronized boolean hasBlankNodes()
+    {
+        return hasBlankNodes(added) || hasBlankNodes(removed);
+    }
+
+    /**
+     * Turn the log into a single update request, that makes the same changes
+     * to the given graph of a store.
+     * 
+     * @param graph
+     *            IRI of the named graph to change
+     * @return DELETE DATA and INSERT DATA for the removed and added statements
+     */
+    public synchronized UpdateRequest toUpdateRequest(String graph)
+    {
+        Node g = NodeFactory.createURI(graph);
+        UpdateRequest request = UpdateFactory.create();
+        if (!removed.isEmpty()) {
+            request.add(new UpdateDataDelete(quads(removed, g)));
+        }
+        if (!added.isEmpty()) {
+            request.add(new UpdateDataInsert(quads(added, g)));
+        }
+        return request;
+    }
+
+    /**
+     * Forget the changes logged so far. A bulk read going on is still a bulk
+     * change.
+     */
+    public synchronized void clear()
+    {
+        added.removeAll();
+        removed.removeAll();
+        bulk = reading > 0;
+    }
+
+    private static QuadDataAcc quads(Model m, Node graph)
+    {
+        QuadDataAcc acc = new QuadDataAcc();
+        StmtIterator it = m.listStatements();
+        while (it.hasNext()) {
+            acc.addQuad(new Quad(graph, it.next().asTriple()));
+        }
+        return acc;
+    }
+
+    private static boolean hasBlankNodes(Model m)
+    {
+        StmtIterator it = m.listStatements();
+        while (it.hasNext()) {
+            Statement s = it.next();
+            if (s.getSubject().isAnon() || s.getObject().isAnon()) {
+                it.close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collect(Model m, Set<Resource> touched)
+    {
+        StmtIterator it = m.listStatements();
+        while (it.hasNext()) {
+            Statement s = it.next();
+            touched.add(s.getSubject());
+            if (s.getObject().isResource()) {
+                touched.add(s.getObject().asResource());
+            }
+        }
+    }
+}
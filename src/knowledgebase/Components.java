@@ -0,0 +1,147 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * The connected components of the dependency graph. Two nodes are in the same
+ * component if some chain of IN, OUT or justifies edges connects them, in any
+ * direction. Beliefs in different components can never affect each other, so
+ * each component can be labelled on its own.
+ *
+ */
+class Components
+{
+    /**
+     * A set of beliefs and justifications connected to each other.
+     */
+    static class Component
+    {
+        private final List<Belief> beliefs = new ArrayList<Belief>();
+        private final List<Justification> justifications = new ArrayList<Justification>();
+
+        public List<Belief> getBeliefs()
+        {
+            return beliefs;
+        }
+
+        public List<Justification> getJustifications()
+        {
+            return justifications;
+        }
+
+        /**
+         * @return number of beliefs and justifications in the component
+         */
+        public int size()
+        {
+            return beliefs.size() + justifications.size();
+        }
+    }
+
+    private final BeliefTable table;
+
+    /**
+     * Union-find forest over all nodes. Beliefs use their own id, while
+     * justifications are placed after the beliefs.
+     */
+    private final int[] parent;
+
+    private final List<Component> components = new ArrayList<Component>();
+    private final Map<Integer, Component> byRoot = new LinkedHashMap<Integer, Component>();
+
+    /**
+     * Compute the components of every interned belief and justification.
+     *
+     * @param table
+     *            of beliefs and justifications
+     * @param index
+     *            of dependency edges
+     */
+    public Components(BeliefTable table, DependencyIndex index) {
+        this.table = table;
+        int beliefs = table.beliefCount();
+        parent = new int[beliefs + table.justificationCount()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        for (Justification j : table.getJustifications()) {
+            int node = beliefs + j.getId();
+            List<Resource> linked = index.getAntecedents(j.getResource());
+            linked.addAll(index.getConsequents(j.getResource()));
+            for (Resource r : linked) {
+                Belief b = table.getBelief(r);
+                if (b != null) {
+                    union(node, b.getId());
+                }
+            }
+        }
+
+        for (Belief b : table.getBeliefs()) {
+            componentOf(b.getId()).beliefs.add(b);
+        }
+        for (Justification j : table.getJustifications()) {
+            componentOf(beliefs + j.getId()).justifications.add(j);
+        }
+    }
+
+    /**
+     * @return all components, in the order of their first belief
+     */
+    public List<Component> getComponents()
+    {
+        return components;
+    }
+
+    /**
+     * @return the component of r, or null if r is neither an interned belief
+     *         nor an interned justification
+     */
+    public Component get(Resource r)
+    {
+        Belief b = table.getBelief(r);
+        if (b != null) {
+            return byRoot.get(find(b.getId()));
+        }
+        Justification j = table.getJustification(r);
+        if (j != null) {
+            return byRoot.get(find(table.beliefCount() + j.getId()));
+        }
+        return null;
+    }
+
+    private Component componentOf(int node)
+    {
+        int root = find(node);
+        Component c = byRoot.get(root);
+        if (c == null) {
+            c = new Component();
+            byRoot.put(root, c);
+            components.add(c);
+        }
+        return c;
+    }
+
+    private int find(int node)
+    {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private void union(int a, int b)
+    {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra != rb) {
+            parent[ra] = rb;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * The strongly connected components of the belief graph, in topological order.
+ * A belief precedes another if it is an antecedent of some justification of
+ * the other. Beliefs in the same strongly connected component depend on each
+ * other through a loop of justifications, and have to be labelled together.
+ *
+ */
+class Condensation
+{
+    /**
+     * A strongly connected set of beliefs.
+     */
+    static class Scc
+    {
+        private final List<Belief> beliefs = new ArrayList<Belief>();
+        private boolean cyclic;
+
+        public List<Belief> getBeliefs()
+        {
+            return beliefs;
+        }
+
+        /**
+         * @return whether the beliefs form a loop, which is also the case for
+         *         a single belief that depends on itself
+         */
+        public boolean isCyclic()
+        {
+            return cyclic;
+        }
+    }
+
+    private final List<Scc> order = new ArrayList<Scc>();
+
+    /**
+     * Compute the strongly connected components of the given beliefs. Edges
+     * leading to beliefs outside of the list are ignored.
+     *
+     * @param beliefs
+     *            to split into components
+     * @param table
+     *            of beliefs and justifications
+     * @param index
+     *            of dependency edges
+     */
+    public Condensation(List<Belief> beliefs, BeliefTable table,
+            DependencyIndex index) {
+        // Sized to the given beliefs rather than the table, so a small
+        // condensation costs as much as it has beliefs.
+        int n = beliefs.size();
+        Map<Integer, Integer> local = new HashMap<Integer, Integer>(
+                n * 4 / 3 + 1);
+        for (int i = 0; i < n; i++) {
+            local.put(beliefs.get(i).getId(), i);
+        }
+
+        int[][] successors = new int[n][];
+        boolean[] selfLoop = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            List<Integer> s = new ArrayList<Integer>();
+            for (Resource j : index.getConsequences(beliefs.get(i).getResource())) {
+                for (Resource c : index.getConsequents(j)) {
+                    Belief b = table.getBelief(c);
+                    Integer w = b == null ? null : local.get(b.getId());
+                    if (w == null) {
+                        continue;
+                    }
+                    s.add(w);
+                    if (w == i) {
+                        selfLoop[i] = true;
+                    }
+                }
+            }
+            successors[i] = new int[s.size()];
+            for (int k = 0; k < s.size(); k++) {
+                successors[i][k] = s.get(k);
+            }
+        }
+
+        // Tarjan's algorithm, with explicit stacks so long chains of
+        // justifications do not exhaust the call stack.
+        int[] number = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(number, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int sp = 0;
+        int[] calls = new int[n];
+        int[] next = new int[n];
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (number[root] >= 0) {
+                continue;
+            }
+            int top = 0;
+            calls[0] = root;
+            next[0] = 0;
+            number[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+
+            while (top >= 0) {
+                int v = calls[top];
+                if (next[top] < successors[v].length) {
+                    int w = successors[v][next[top]++];
+                    if (number[w] < 0) {
+                        number[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        top++;
+                        calls[top] = w;
+                        next[top] = 0;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], number[w]);
+                    }
+                    continue;
+                }
+
+                top--;
+                if (top >= 0) {
+                    int parent = calls[top];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] == number[v]) {
+                    Scc scc = new Scc();
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        scc.beliefs.add(beliefs.get(w));
+                    } while (w != v);
+                    scc.cyclic = scc.beliefs.size() > 1 || selfLoop[v];
+                    order.add(scc);
+                }
+            }
+        }
+
+        // Tarjan finds components that nothing depends on first.
+        Collections.reverse(order);
+    }
+
+    /**
+     * @return all components, every one before the components depending on it
+     */
+    public List<Scc> getOrder()
+    {
+        return order;
+    }
+}
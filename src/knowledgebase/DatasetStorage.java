@@ -0,0 +1,133 @@
+package knowledgebase;
+
+import java.util.function.Supplier;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.update.UpdateAction;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Storage on a transactional dataset in the same process, so reads and writes
+ * never leave the JVM. The dataset is either an embedded TDB database, or kept
+ * in memory only, which needs no server or files at all.
+ *
+ */
+public class DatasetStorage implements Storage
+{
+    private final Dataset dataset;
+
+    /**
+     * @param dataset
+     *            to store graphs in, which must support transactions
+     */
+    public DatasetStorage(Dataset dataset) {
+        this.dataset = dataset;
+    }
+
+    /**
+     * @param directory
+     *            of the TDB database, which is created if it does not exist
+     * @return storage on an embedded TDB database
+     */
+    public static DatasetStorage tdb(String directory)
+    {
+        return new DatasetStorage(TDBFactory.createDataset(directory));
+    }
+
+    /**
+     * @return storage on an empty dataset in memory, which is lost when the
+     *         process ends
+     */
+    public static DatasetStorage memory()
+    {
+        return new DatasetStorage(DatasetFactory.createTxnMem());
+    }
+
+    @Override
+    public Model getModel(String graph)
+    {
+        return read(() -> ModelFactory.createDefaultModel().add(
+                dataset.getNamedModel(graph)));
+    }
+
+    @Override
+    public boolean containsModel(String graph)
+    {
+        return read(() -> dataset.containsNamedModel(graph));
+    }
+
+    @Override
+    public void putModel(String graph, Model m)
+    {
+        write(() -> dataset.replaceNamedModel(graph, m));
+    }
+
+    @Override
+    public void update(UpdateRequest request)
+    {
+        write(() -> UpdateAction.execute(request, dataset));
+    }
+
+    @Override
+    public void begin(ReadWrite readWrite)
+    {
+        dataset.begin(readWrite);
+    }
+
+    @Override
+    public void commit()
+    {
+        dataset.commit();
+    }
+
+    @Override
+    public void abort()
+    {
+        dataset.abort();
+    }
+
+    @Override
+    public boolean isInTransaction()
+    {
+        return dataset.isInTransaction();
+    }
+
+    @Override
+    public void end()
+    {
+        dataset.end();
+    }
+
+    private <T> T read(Supplier<T> work)
+    {
+        if (dataset.isInTransaction()) {
+            return work.get();
+        }
+        dataset.begin(ReadWrite.READ);
+        try {
+            return work.get();
+        } finally {
+            dataset.end();
+        }
+    }
+
+    private void write(Runnable work)
+    {
+        if (dataset.isInTransaction()) {
+            work.run();
+            return;
+        }
+        dataset.begin(ReadWrite.WRITE);
+        try {
+            work.run();
+            dataset.commit();
+        } finally {
+            dataset.end();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+import vocabs.JTMS;
+
+/**
+ * In-memory index of the JTMS dependency graph. Holds the edges between
+ * beliefs and justifications in plain maps, so that the reasoner can walk the
+ * graph without parsing and executing SPARQL.
+ *
+ * The index is built once from a model, and is then kept up to date by
+ * registering it as a listener on the knowledge base. Every justification whose
+ * lists change through the listener is handed to a callback.
+ *
+ */
+class DependencyIndex extends StatementListener
+{
+    /**
+     * The model the indexed resources belong to.
+     */
+    private final Model model;
+
+    /**
+     * Called with a justification after one of its edges changed.
+     */
+    private final Consumer<Resource> changed;
+
+    // Justification -> beliefs.
+    private final Map<Resource, Set<Resource>> inList = new LinkedHashMap<Resource, Set<Resource>>();
+    private final Map<Resource, Set<Resource>> outList = new LinkedHashMap<Resource, Set<Resource>>();
+    private final Map<Resource, Set<Resource>> consequents = new LinkedHashMap<Resource, Set<Resource>>();
+
+    // Belief -> justifications.
+    private final Map<Resource, Set<Resource>> supports = new LinkedHashMap<Resource, Set<Resource>>();
+    private final Map<Resource, Set<Resource>> opposes = new LinkedHashMap<Resource, Set<Resource>>();
+    private final Map<Resource, Set<Resource>> justifiedBy = new LinkedHashMap<Resource, Set<Resource>>();
+
+    /**
+     * @param model
+     *            whose resources are returned by the index
+     * @param changed
+     *            called with a justification after its edges changed
+     */
+    public DependencyIndex(Model model, Consumer<Resource> changed) {
+        this.model = model;
+        this.changed = changed;
+    }
+
+    /**
+     * Drop the index and read every dependency edge of m.
+     *
+     * @param m
+     *            model to index
+     */
+    public void build(Model m)
+    {
+        clear();
+        Property[] edges = { JTMS.HAS_SUPPORT, JTMS.SUPPORTS,
+                JTMS.HAS_OPPOSITION, JTMS.OPPOSES, JTMS.JUSTIFIES,
+                JTMS.JUSTIFIED_BY };
+        for (Property p : edges) {
+            StmtIterator it = m.listStatements(null, p, (Resource) null);
+            while (it.hasNext()) {
+                add(it.next());
+            }
+        }
+    }
+
+    public void clear()
+    {
+        inList.clear();
+        outList.clear();
+        consequents.clear();
+        supports.clear();
+        opposes.clear();
+        justifiedBy.clear();
+    }
+
+    @Override
+    public void addedStatement(Statement s)
+    {
+        fire(add(s));
+    }
+
+    @Override
+    public void removedStatement(Statement s)
+    {
+        fire(remove(s));
+    }
+
+    private void fire(Resource j)
+    {
+        if (j != null) {
+            changed.accept(j);
+        }
+    }
+
+    /**
+     * Index s, if it is a dependency edge.
+     *
+     * @param s
+     *            statement to add
+     * @return the justification of the edge, or null if s is no edge
+     */
+    public Resource add(Statement s)
+    {
+        if (!s.getObject().isResource()) {
+            return null;
+        }
+        Property p = s.getPredicate();
+        Resource subj = wrap(s.getSubject());
+        Resource obj = wrap(s.getObject().asResource());
+
+        if (p.equals(JTMS.HAS_SUPPORT)) {
+            return link(inList, subj, supports, obj);
+        } else if (p.equals(JTMS.SUPPORTS)) {
+            return link(inList, obj, supports, subj);
+        } else if (p.equals(JTMS.HAS_OPPOSITION)) {
+            return link(outList, subj, opposes, obj);
+        } else if (p.equals(JTMS.OPPOSES)) {
+            return link(outList, obj, opposes, subj);
+        } else if (p.equals(JTMS.JUSTIFIES)) {
+            return link(consequents, subj, justifiedBy, obj);
+        } else if (p.equals(JTMS.JUSTIFIED_BY)) {
+            return link(consequents, obj, justifiedBy, subj);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the edge of s from the index, unless the model of s still states
+     * the same edge through the inverse property.
+     *
+     * @param s
+     *            statement that was removed
+     * @return the justification of the edge, or null if s is no edge
+     */
+    public Resource remove(Statement s)
+    {
+        if (!s.getObject().isResource()) {
+            return null;
+        }
+        Property p = s.getPredicate();
+        Model m = s.getModel();
+        Resource subj = wrap(s.getSubject());
+        Resource obj = wrap(s.getObject().asResource());
+
+        if (p.equals(JTMS.HAS_SUPPORT) || p.equals(JTMS.SUPPORTS)) {
+            Resource j = p.equals(JTMS.HAS_SUPPORT) ? subj : obj;
+            Resource b = p.equals(JTMS.HAS_SUPPORT) ? obj : subj;
+            if (!stated(m, j, JTMS.HAS_SUPPORT, JTMS.SUPPORTS, b)) {
+                return unlink(inList, j, supports, b);
+            }
+        } else if (p.equals(JTMS.HAS_OPPOSITION) || p.equals(JTMS.OPPOSES)) {
+            Resource j = p.equals(JTMS.HAS_OPPOSITION) ? subj : obj;
+            Resource b = p.equals(JTMS.HAS_OPPOSITION) ? obj : subj;
+            if (!stated(m, j, JTMS.HAS_OPPOSITION, JTMS.OPPOSES, b)) {
+                return unlink(outList, j, opposes, b);
+            }
+        } else if (p.equals(JTMS.JUSTIFIES) || p.equals(JTMS.JUSTIFIED_BY)) {
+            Resource j = p.equals(JTMS.JUSTIFIES) ? subj : obj;
+            Resource b = p.equals(JTMS.JUSTIFIES) ? obj : subj;
+            if (!stated(m, j, JTMS.JUSTIFIES, JTMS.JUSTIFIED_BY, b)) {
+                return unlink(consequents, j, justifiedBy, b);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return beliefs in the IN list of j
+     */
+    public List<Resource> getInList(Resource j)
+    {
+        return get(inList, j);
+    }
+
+    /**
+     * @return beliefs in the OUT list of j
+     */
+    public List<Resource> getOutList(Resource j)
+    {
+        return get(outList, j);
+    }
+
+    /**
+     * @return beliefs in either the IN or the OUT list of j
+     */
+    public List<Resource> getAntecedents(Resource j)
+    {
+        List<Resource> l = get(inList, j);
+        l.addAll(get(outList, j));
+        return l;
+    }
+
+    /**
+     * @return beliefs justified by j
+     */
+    public List<Resource> getConsequents(Resource j)
+    {
+        return get(consequents, j);
+    }
+
+    /**
+     * @return justifications that have b in their IN list
+     */
+    public List<Resource> getSupported(Resource b)
+    {
+        return get(supports, b);
+    }
+
+    /**
+     * @return justifications that have b in their OUT list
+     */
+    public List<Resource> getOpposed(Resource b)
+    {
+        return get(opposes, b);
+    }
+
+    /**
+     * @return justifications that have b as an antecedent
+     */
+    public List<Resource> getConsequences(Resource b)
+    {
+        List<Resource> l = get(supports, b);
+        l.addAll(get(opposes, b));
+        return l;
+    }
+
+    /**
+     * @return justifications that justify b
+     */
+    public List<Resource> getJustifications(Resource b)
+    {
+        return get(justifiedBy, b);
+    }
+
+    public boolean hasAntecedents(Resource j)
+    {
+        return inList.containsKey(j) || outList.containsKey(j);
+    }
+
+    public boolean isJustified(Resource b)
+    {
+        return justifiedBy.containsKey(b);
+    }
+
+    public boolean isAntecedent(Resource b)
+    {
+        return supports.containsKey(b) || opposes.containsKey(b);
+    }
+
+    private Resource wrap(Resource r)
+    {
+        return model.wrapAsResource(r.asNode());
+    }
+
+    private static boolean stated(Model m, Resource j, Property forward,
+            Property inverse, Resource b)
+    {
+        if (m == null) {
+            return false;
+        }
+        return m.contains(j, forward, b) || m.contains(b, inverse, j);
+    }
+
+    private static List<Resource> get(Map<Resource, Set<Resource>> map,
+            Resource key)
+    {
+        Set<Resource> s = map.get(key);
+        if (s == null) {
+            return new ArrayList<Resource>();
+        }
+        return new ArrayList<Resource>(s);
+    }
+
+    private static Resource link(Map<Resource, Set<Resource>> forward,
+            Resource j, Map<Resource, Set<Resource>> backward, Resource b)
+    {
+        put(forward, j, b);
+        put(backward, b, j);
+        return j;
+    }
+
+    private static Resource unlink(Map<Resource, Set<Resource>> forward,
+            Resource j, Map<Resource, Set<Resource>> backward, Resource b)
+    {
+        drop(forward, j, b);
+        drop(backward, b, j);
+        return j;
+    }
+
+    private static void put(Map<Resource, Set<Resource>> map, Resource key,
+            Resource value)
+    {
+        Set<Resource> s = map.get(key);
+        if (s == null) {
+            s = new LinkedHashSet<Resource>();
+            map.put(key, s);
+        }
+        s.add(value);
+    }
+
+    private static void drop(Map<Resource, Set<Resource>> map, Resource key,
+            Resource value)
+    {
+        Set<Resource> s = map.get(key);
+        if (s != null) {
+            s.remove(value);
+            if (s.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
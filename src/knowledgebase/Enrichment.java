@@ -0,0 +1,306 @@
+package knowledgebase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.OWL;
+
+/**
+ * Fetches statements about resources from dbpedia in the background. A
+ * resource is fetched at most once at a time: asking for it again while it is
+ * being fetched joins the running fetch. Results are kept in a bounded cache,
+ * least recently used first out, for TTL_MILLIS, and the cache is saved to
+ * disk so it outlives the app. Failed fetches are not cached.
+ *
+ */
+class Enrichment
+{
+    private static final int MAGIC = 0x53444250;
+    private static final int VERSION = 1;
+
+    /**
+     * Largest number of resources kept in the cache.
+     */
+    private static final int MAX_ENTRIES = 500;
+
+    /**
+     * How long a fetched result is used before it is fetched again.
+     */
+    private static final long TTL_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * How long a fetch may take before it is given up.
+     */
+    static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Number of fetches run at once.
+     */
+    private static final int THREADS = 2;
+
+    /**
+     * Federated query for the statements about every alias of ?resource. The
+     * query runs against a model linking ?resource to each of its aliases.
+     * The endpoint is filled in when the pipeline is created. Results are
+     * filtered to English only.
+     */
+    private static final String QUERY = "SELECT ?s ?p ?o"
+            + " WHERE { ?resource <%1$s> ?s . "
+            + " SERVICE <%2$s> { ?s ?p ?o } "
+            + " FILTER(langMatches(lang(?o), \"EN\"))" + " }" + " LIMIT 300";
+
+    private final QueryRegistry queries;
+    private final File cacheFile;
+    private final long timeoutMillis;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            THREADS, r -> {
+                Thread t = new Thread(r, "dbpedia");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Fetched results by resource, the least recently used first.
+     */
+    private final LinkedHashMap<String, Cached> cache = new LinkedHashMap<String, Cached>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Fetches that have not completed yet, by resource.
+     */
+    private final Map<String, CompletableFuture<Model>> inFlight = new HashMap<String, CompletableFuture<Model>>();
+
+    private static class Cached
+    {
+        final long fetched;
+        final Model statements;
+
+        Cached(long fetched, Model statements) {
+            this.fetched = fetched;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * @param queries
+     *            to register the query in, as "dbpedia"
+     * @param endpoint
+     *            SPARQL endpoint of dbpedia, or of a stand-in for it
+     * @param cacheFile
+     *            to keep the cache in, or null to keep it in memory only
+     */
+    public Enrichment(QueryRegistry queries, String endpoint,
+            File cacheFile) {
+        this(queries, endpoint, cacheFile, TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param queries
+     *            to register the query in, as "dbpedia"
+     * @param endpoint
+     *            SPARQL endpoint of dbpedia, or of a stand-in for it
+     * @param cacheFile
+     *            to keep the cache in, or null to keep it in memory only
+     * @param timeoutMillis
+     *            how long a fetch may take before it is given up
+     */
+    Enrichment(QueryRegistry queries, String endpoint, File cacheFile,
+            long timeoutMillis) {
+        this.queries = queries;
+        this.cacheFile = cacheFile;
+        this.timeoutMillis = timeoutMillis;
+        queries.registerQuery("dbpedia",
+                String.format(QUERY, OWL.sameAs, endpoint));
+        if (cacheFile != null && cacheFile.exists()) {
+            try {
+                load();
+            } catch (IOException e) {
+                System.out.println("Could not read " + cacheFile + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Fetch the statements to add to the knowledge base about resource, from
+     * the cache if they are fresh enough, and from dbpedia otherwise. Returns
+     * at once.
+     *
+     * @param resource
+     *            IRI of the resource
+     * @param aliases
+     *            resources that are the same as resource, whose statements
+     *            are fetched as well
+     * @return completes with the statements, on a background thread
+     */
+    public synchronized CompletableFuture<Model> fetch(String resource,
+            List<Resource> aliases)
+    {
+        Cached e = cache.get(resource);
+        if (e != null
+                && System.currentTimeMillis() - e.fetched < TTL_MILLIS) {
+            return CompletableFuture.completedFuture(e.statements);
+        }
+        CompletableFuture<Model> running = inFlight.get(resource);
+        if (running != null) {
+            return running;
+        }
+
+        // The fetch is done with before its future completes, so whoever
+        // waits for it finds the result in the cache.
+        CompletableFuture<Model> f = new CompletableFuture<Model>();
+        inFlight.put(resource, f);
+        executor.execute(() -> {
+            Model statements;
+            try {
+                statements = query(resource, aliases);
+            } catch (RuntimeException error) {
+                done(resource, null);
+                f.completeExceptionally(error);
+                return;
+            }
+            done(resource, statements);
+            f.complete(statements);
+        });
+        return f;
+    }
+
+    /**
+     * Stop fetching, and save the cache.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+        save();
+    }
+
+    private Model query(String resource, List<Resource> aliases)
+    {
+        System.out.println("Fetching " + resource + " from dbpedia...");
+        Resource r = ResourceFactory.createResource(resource);
+        Model links = ModelFactory.createDefaultModel();
+        links.add(r, OWL.sameAs, r);
+        for (Resource alias : aliases) {
+            links.add(r, OWL.sameAs, alias);
+        }
+
+        Model statements = ModelFactory.createDefaultModel();
+        for (QuerySolution soln : queries.select("dbpedia", links,
+                QueryRegistry.with("resource", r), timeoutMillis)) {
+            Resource res = soln.get("s").asResource();
+            Property pred = ResourceFactory.createProperty(soln.get("p")
+                    .toString());
+            RDFNode o = soln.get("o");
+
+            // Create the dbpedia resource in KB.
+            statements.add(r, pred, o);
+
+            // Internalize linking in knowledgeBase
+            statements.add(res, OWL.sameAs, resource);
+        }
+        return statements;
+    }
+
+    private void done(String resource, Model statements)
+    {
+        synchronized (this) {
+            inFlight.remove(resource);
+            if (statements != null) {
+                cache.put(resource,
+                        new Cached(System.currentTimeMillis(), statements));
+            }
+        }
+        if (statements != null) {
+            save();
+        }
+    }
+
+    /**
+     * Write the cache to a temporary file, and move it over the cache file.
+     */
+    private synchronized void save()
+    {
+        if (cacheFile == null) {
+            return;
+        }
+        File tmp = new File(cacheFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(cache.size());
+                for (Map.Entry<String, Cached> e : cache.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().fetched);
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    RDFDataMgr.write(bytes, e.getValue().statements,
+                            Lang.RDFTHRIFT);
+                    out.writeInt(bytes.size());
+                    bytes.writeTo(out);
+                }
+            }
+            Files.move(tmp.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not save " + cacheFile + ": " + e);
+        }
+    }
+
+    private void load() throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(cacheFile
+                        + " is not a cache of this version");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String resource = in.readUTF();
+                long fetched = in.readLong();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                Model statements = ModelFactory.createDefaultModel();
+                RDFDataMgr.read(statements, new ByteArrayInputStream(bytes),
+                        Lang.RDFTHRIFT);
+                cache.put(resource, new Cached(fetched, statements));
+            }
+        }
+    }
+}
@@ -1,16 +1,15 @@
 package knowledgebase;
 
-import org.apache.jena.query.DatasetAccessor;
-import org.apache.jena.query.DatasetAccessorFactory;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.update.UpdateRequest;
 import org.apache.jena.vocabulary.OWL;
 
 /**
- * Expose a dataset accessor to the fuseki db. We also normalize the behaviour
- * of the app when it starts (populate both reasoner and KB db with version
- * info).
+ * Expose the storage of the db, which is a fuseki server unless another
+ * storage is given. We also normalize the behaviour of the app when it starts
+ * (populate both reasoner and KB db with version info).
  * 
  *
  */
@@ -20,31 +19,65 @@ public class Fuseki
 
     private final String service;
 
-    public final DatasetAccessor accessor;
+    private final Storage storage;
 
-    public Fuseki(String service, String serviceURI) {
+    public Fuseki(String service, String serviceURI, String updateService) {
+        this(new HttpStorage(serviceURI, updateService), service, serviceURI);
+    }
+
+    /**
+     * @param storage
+     *            to keep the graphs in, instead of a fuseki server
+     */
+    public Fuseki(Storage storage) {
+        this(storage, null, null);
+    }
+
+    private Fuseki(Storage storage, String service, String serviceURI) {
+        this.storage = storage;
         this.serviceURI = serviceURI;
         this.service = service;
-        accessor = DatasetAccessorFactory.createHTTP(serviceURI);
 
         // If the knowledge base was empty, create it and populate it with
-        // something.
-        if (!accessor.containsModel(Tms.Graph)) {
+        // something. The version is stated about the graph rather than a
+        // blank node, so the knowledge base can be fingerprinted.
+        if (!storage.containsModel(Tms.Graph)) {
             Model kb = ModelFactory.createDefaultModel();
-            Resource v = kb.createResource();
+            Resource v = kb.createResource(Tms.Graph);
             v.addProperty(OWL.versionInfo, "1");
-            accessor.putModel(Tms.Graph, kb);
+            storage.putModel(Tms.Graph, kb);
         }
 
         // If the reasoner was empty, create it and populate it with something.
-        if (!accessor.containsModel(Reasoner.Graph)) {
+        if (!storage.containsModel(Reasoner.Graph)) {
             Model rb = ModelFactory.createOntologyModel();
-            Resource v = rb.createResource();
+            Resource v = rb.createResource(Reasoner.Graph);
             v.addProperty(OWL.versionInfo, "1");
-            accessor.putModel(Reasoner.Graph, rb);
+            storage.putModel(Reasoner.Graph, rb);
         }
     }
 
+    public Storage getStorage()
+    {
+        return storage;
+    }
+
+    /**
+     * @return a copy of the graph
+     */
+    public Model getModel(String graph)
+    {
+        return storage.getModel(graph);
+    }
+
+    /**
+     * Replace the graph with m.
+     */
+    public void putModel(String graph, Model m)
+    {
+        storage.putModel(graph, m);
+    }
+
     public String getServiceURI()
     {
         return serviceURI;
@@ -54,4 +87,15 @@ public class Fuseki
     {
         return service;
     }
+
+    /**
+     * Execute an update request against the db.
+     * 
+     * @param request
+     *            to execute
+     */
+    public void update(UpdateRequest request)
+    {
+        storage.update(request);
+    }
 }
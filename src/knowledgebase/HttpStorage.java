@@ -0,0 +1,81 @@
+package knowledgebase;
+
+import org.apache.jena.query.DatasetAccessor;
+import org.apache.jena.query.DatasetAccessorFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.update.UpdateExecutionFactory;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Storage on a remote SPARQL server, such as Fuseki, through the graph store
+ * protocol and the update service. Every request is atomic on the server, so
+ * there is nothing to begin or commit here.
+ *
+ */
+public class HttpStorage implements Storage
+{
+    private final DatasetAccessor accessor;
+    private final String updateService;
+
+    /**
+     * @param serviceURI
+     *            of the graph store protocol
+     * @param updateService
+     *            of SPARQL update
+     */
+    public HttpStorage(String serviceURI, String updateService) {
+        accessor = DatasetAccessorFactory.createHTTP(serviceURI);
+        this.updateService = updateService;
+    }
+
+    @Override
+    public Model getModel(String graph)
+    {
+        return accessor.getModel(graph);
+    }
+
+    @Override
+    public boolean containsModel(String graph)
+    {
+        return accessor.containsModel(graph);
+    }
+
+    @Override
+    public void putModel(String graph, Model m)
+    {
+        accessor.putModel(graph, m);
+    }
+
+    @Override
+    public void update(UpdateRequest request)
+    {
+        UpdateExecutionFactory.createRemote(request, updateService).execute();
+    }
+
+    @Override
+    public void begin(ReadWrite readWrite)
+    {
+    }
+
+    @Override
+    public void commit()
+    {
+    }
+
+    @Override
+    public void abort()
+    {
+    }
+
+    @Override
+    public boolean isInTransaction()
+    {
+        return false;
+    }
+
+    @Override
+    public void end()
+    {
+    }
+}
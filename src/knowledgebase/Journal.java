@@ -0,0 +1,314 @@
+package knowledgebase;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.sparql.util.FmtUtils;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+
+/**
+ * A local, append-only journal of changes to a model, next to a snapshot of
+ * the model. Every change is appended as one record, so the model can be
+ * rebuilt on startup from the snapshot and the records after it, without
+ * asking the db.
+ *
+ * A record is a line per changed statement, "+" or "-" followed by the tab
+ * separated nodes of the statement, and ends with a line holding a single
+ * ".". A record that was not written completely is ignored on replay, and cut
+ * off, so later records are not appended to it. Writes are synced to disk in
+ * batches, at most SYNC_MILLIS after they are made.
+ *
+ */
+class Journal
+{
+    /**
+     * How long appended records may wait before they are synced to disk.
+     */
+    private static final long SYNC_MILLIS = 50;
+
+    private static final String END = ".";
+
+    private final File snapshotFile;
+    private final File journalFile;
+
+    private FileOutputStream journalOut;
+    private Writer writer;
+    private boolean unsynced = false;
+    private int records = 0;
+
+    private final ScheduledExecutorService syncer = Executors
+            .newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * @param dir
+     *            to keep the snapshot and the journal in, which is created if
+     *            it does not exist
+     */
+    public Journal(File dir) {
+        dir.mkdirs();
+        snapshotFile = new File(dir, "kb.snapshot");
+        journalFile = new File(dir, "kb.journal");
+        syncer.scheduleWithFixedDelay(this::sync, SYNC_MILLIS, SYNC_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether there is a snapshot or any records to load
+     */
+    public boolean exists()
+    {
+        return snapshotFile.exists() || journalFile.exists();
+    }
+
+    /**
+     * Rebuild the model from the snapshot, and replay every complete record
+     * written after it. An incomplete record at the end is cut off.
+     *
+     * @return the model
+     * @throws IOException
+     *             if the files can not be read
+     */
+    public synchronized Model load() throws IOException
+    {
+        Model m = ModelFactory.createDefaultModel();
+        if (snapshotFile.exists()) {
+            try (BufferedReader in = reader(snapshotFile)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        m.getGraph().add(parse(line));
+                    }
+                }
+            }
+        }
+
+        records = 0;
+        if (journalFile.exists()) {
+            List<String> record = new ArrayList<String>();
+            // Bytes read, and bytes of the complete records. Every line ends
+            // with a single '\n', as only append writes the journal.
+            long read = 0;
+            long complete = 0;
+            try (BufferedReader in = reader(journalFile)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    read += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    if (!line.equals(END)) {
+                        record.add(line);
+                        continue;
+                    }
+                    complete = read;
+                    for (String change : record) {
+                        Triple t = parse(change.substring(2));
+                        if (change.charAt(0) == '+') {
+                            m.getGraph().add(t);
+                        } else {
+                            m.getGraph().delete(t);
+                        }
+                    }
+                    record.clear();
+                    records++;
+                }
+            }
+            if (!record.isEmpty()) {
+                System.out.println("Ignoring an incomplete record at the end"
+                        + " of " + journalFile);
+                try (FileChannel out = FileChannel.open(journalFile.toPath(),
+                        StandardOpenOption.WRITE)) {
+                    out.truncate(complete);
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Append the changes of log as one record. The record is synced to disk
+     * within SYNC_MILLIS.
+     *
+     * @param log
+     *            of changes to append
+     * @throws IOException
+     *             if the journal can not be written
+     */
+    public synchronized void append(ChangeLog log) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        synchronized (log) {
+            if (log.isEmpty()) {
+                return;
+            }
+            lines(sb, "- ", log.getRemoved());
+            lines(sb, "+ ", log.getAdded());
+        }
+        sb.append(END).append('\n');
+
+        writer().write(sb.toString());
+        unsynced = true;
+        records++;
+    }
+
+    /**
+     * @return number of records since the last snapshot
+     */
+    public synchronized int getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * Write everything appended so far to disk.
+     */
+    public synchronized void sync()
+    {
+        if (!unsynced) {
+            return;
+        }
+        try {
+            writer.flush();
+            journalOut.getFD().sync();
+            unsynced = false;
+        } catch (IOException e) {
+            System.out.println("Could not sync " + journalFile + ": " + e);
+        }
+    }
+
+    /**
+     * Replace the snapshot with m, and start an empty journal. The snapshot
+     * is written to a temporary file first, so a crash leaves either the old
+     * or the new snapshot in place.
+     *
+     * @param m
+     *            the current model
+     * @throws IOException
+     *             if the snapshot can not be written
+     */
+    public synchronized void compact(Model m) throws IOException
+    {
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out,
+                    StandardCharsets.UTF_8));
+            StmtIterator it = m.listStatements();
+            while (it.hasNext()) {
+                w.write(format(it.next().asTriple()));
+                w.write('\n');
+            }
+            w.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), snapshotFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        closeWriter();
+        Files.deleteIfExists(journalFile.toPath());
+        records = 0;
+    }
+
+    /**
+     * Sync and close the journal.
+     */
+    public synchronized void close()
+    {
+        sync();
+        syncer.shutdown();
+        try {
+            closeWriter();
+        } catch (IOException e) {
+            System.out.println("Could not close " + journalFile + ": " + e);
+        }
+    }
+
+    private Writer writer() throws IOException
+    {
+        if (writer == null) {
+            journalOut = new FileOutputStream(journalFile, true);
+            writer = new BufferedWriter(new OutputStreamWriter(journalOut,
+                    StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+
+    private void closeWriter() throws IOException
+    {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            journalOut = null;
+            unsynced = false;
+        }
+    }
+
+    private static BufferedReader reader(File f) throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(
+                f), StandardCharsets.UTF_8));
+    }
+
+    private static void lines(StringBuilder sb, String op, Model m)
+    {
+        StmtIterator it = m.listStatements();
+        while (it.hasNext()) {
+            sb.append(op).append(format(it.next().asTriple())).append('\n');
+        }
+    }
+
+    private static String format(Triple t)
+    {
+        return format(t.getSubject()) + "\t" + format(t.getPredicate()) + "\t"
+                + format(t.getObject());
+    }
+
+    private static String format(Node n)
+    {
+        // Keep the label of blank nodes, so the same blank node is found
+        // again in the snapshot and in later records.
+        if (n.isBlank()) {
+            return "_:" + n.getBlankNodeLabel();
+        }
+        return FmtUtils.stringForNode(n);
+    }
+
+    private static Triple parse(String line)
+    {
+        String[] nodes = line.split("\t", 3);
+        return Triple.create(parseNode(nodes[0]), parseNode(nodes[1]),
+                parseNode(nodes[2]));
+    }
+
+    private static Node parseNode(String s)
+    {
+        if (s.startsWith("_:")) {
+            return NodeFactory.createBlankNode(s.substring(2));
+        }
+        return NodeFactoryExtra.parseNode(s);
+    }
+}
@@ -5,13 +5,31 @@ import org.apache.jena.rdf.model.Resource;
 /**
  * Represents a justification in the TMS.
  * 
+ * A justification keeps two counters, maintained by the reasoner as the
+ * beliefs in its lists change state: the number of IN-list beliefs that are
+ * not held, and the number of OUT-list beliefs that are held. It holds when
+ * both are zero.
+ * 
  */
 public class Justification extends Base
 {
-    private boolean holds;
+    private final int id;
+    private int inNotHeld;
+    private int outHeld;
 
-    public Justification(Resource justification) {
+    Justification(Resource justification, int id) {
         super(justification);
+        this.id = id;
+    }
+
+    /**
+     * @return dense id of this justification in the reasoner. Once the
+     *         reasoner has built its justifications again, the id may stand
+     *         for another justification.
+     */
+    public int getId()
+    {
+        return id;
     }
 
     public Resource getResource()
@@ -19,13 +37,42 @@ public class Justification extends Base
         return r;
     }
 
-    public void setHolds(boolean holds)
+    /**
+     * @param inNotHeld
+     *            number of IN-list beliefs that are not held
+     * @param outHeld
+     *            number of OUT-list beliefs that are held
+     */
+    public void setCounters(int inNotHeld, int outHeld)
+    {
+        this.inNotHeld = inNotHeld;
+        this.outHeld = outHeld;
+    }
+
+    /**
+     * Some belief in the IN list changed state.
+     * 
+     * @param held
+     *            new state of the belief
+     */
+    public void inChanged(boolean held)
+    {
+        inNotHeld += held ? -1 : 1;
+    }
+
+    /**
+     * Some belief in the OUT list changed state.
+     * 
+     * @param held
+     *            new state of the belief
+     */
+    public void outChanged(boolean held)
     {
-        this.holds = holds;
+        outHeld += held ? 1 : -1;
     }
 
     public boolean getHolds()
     {
-        return holds;
+        return inNotHeld == 0 && outHeld == 0;
     }
 }
@@ -0,0 +1,87 @@
+package knowledgebase;
+
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+
+import vocabs.SEM;
+
+/**
+ * Mission elapsed time, in seconds since launch. Spacelog stamps its events
+ * as days, hours, minutes and seconds ("02:08:23:06"), while the crew and the
+ * logs call times by ground elapsed hours ("56:23:06", GET).
+ *
+ */
+public final class MissionTime
+{
+    private MissionTime() {
+    }
+
+    /**
+     * Parse a time as hours and minutes ("55:50"), hours, minutes and seconds
+     * ("56:23:06"), or days, hours, minutes and seconds ("02:08:23:06").
+     * Every field is a number without a sign. Minutes and seconds are below
+     * 60, and so are hours below 24 when days are given.
+     *
+     * @param s
+     *            time to parse
+     * @return seconds since launch
+     * @throws IllegalArgumentException
+     *             if s is not a time in one of these forms
+     */
+    public static long parse(String s)
+    {
+        String[] parts = s.trim().split(":", -1);
+        if (parts.length < 2 || parts.length > 4) {
+            throw new IllegalArgumentException("Not a mission time: " + s);
+        }
+        long[] units = { 0, 0, 0, 0 };
+        // Fill from the hours, so that "55:50" is hours and minutes.
+        int first = parts.length == 4 ? 0 : 1;
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].matches("\\d{1,9}")) {
+                throw new IllegalArgumentException("Not a mission time: " + s);
+            }
+            units[first + i] = Long.parseLong(parts[i]);
+        }
+        if (units[2] >= 60 || units[3] >= 60 || first == 0 && units[1] >= 24) {
+            throw new IllegalArgumentException("Out of range: " + s);
+        }
+        return ((units[0] * 24 + units[1]) * 60 + units[2]) * 60 + units[3];
+    }
+
+    /**
+     * @return seconds as ground elapsed time, "HH:MM:SS"
+     */
+    public static String format(long seconds)
+    {
+        return String.format("%02d:%02d:%02d", seconds / 3600,
+                seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * @return the time stamp of event in seconds since launch, or -1 if it has
+     *         no time stamp that can be parsed
+     */
+    public static long of(Resource event)
+    {
+        Statement s = event.getProperty(SEM.HAS_TIME_STAMP);
+        return s == null ? -1 : of(s.getObject());
+    }
+
+    /**
+     * @return the time stamp in seconds since launch, or -1 if it is not a
+     *         literal that can be parsed
+     */
+    static long of(RDFNode stamp)
+    {
+        if (!stamp.isLiteral()) {
+            return -1;
+        }
+        try {
+            return parse(stamp.asLiteral().getLexicalForm());
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
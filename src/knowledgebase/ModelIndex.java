@@ -0,0 +1,104 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.StmtIterator;
+
+/**
+ * An index over a set of models, built on first use and then kept up to date
+ * by listening to them. Statements removed in bulk are not reported one by
+ * one, so a bulk removal, or a source supplying a new model, has the index
+ * built again on the next use.
+ *
+ * Subclasses index statements in addedStatement and removedStatement, and
+ * call check before every lookup. Both run while holding the index.
+ *
+ */
+abstract class ModelIndex extends StatementListener
+{
+    private final List<Supplier<Model>> sources;
+
+    /**
+     * The models the index was built from, by source.
+     */
+    private final List<Model> built = new ArrayList<Model>();
+
+    private boolean stale = true;
+
+    /**
+     * @param sources
+     *            supplying the models to index. A source may supply a new
+     *            model, in which case the index is built again.
+     */
+    protected ModelIndex(List<Supplier<Model>> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Drop everything indexed.
+     */
+    protected abstract void clear();
+
+    /**
+     * @return the statements of m to index when the index is built
+     */
+    protected StmtIterator statements(Model m)
+    {
+        return m.listStatements();
+    }
+
+    /**
+     * Have the next lookup build the index again.
+     */
+    protected synchronized void invalidate()
+    {
+        stale = true;
+    }
+
+    @Override
+    public synchronized void notifyEvent(Model m, Object event)
+    {
+        if (event instanceof GraphEvents && event != GraphEvents.startRead
+                && event != GraphEvents.finishRead) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Build the index again if it was invalidated, or a source supplies a new
+     * model.
+     */
+    protected synchronized void check()
+    {
+        List<Model> current = new ArrayList<Model>();
+        for (Supplier<Model> s : sources) {
+            current.add(s.get());
+        }
+        for (int i = 0; !stale && i < current.size(); i++) {
+            stale = current.get(i) != built.get(i);
+        }
+        if (!stale) {
+            return;
+        }
+
+        for (Model m : built) {
+            m.unregister(this);
+        }
+        built.clear();
+        clear();
+        for (Model m : current) {
+            StmtIterator it = statements(m);
+            while (it.hasNext()) {
+                addedStatement(it.next());
+            }
+            m.register(this);
+            built.add(m);
+        }
+        stale = false;
+    }
+}
@@ -0,0 +1,280 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.engine.http.Service;
+import org.apache.jena.update.UpdateAction;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * A registry of named SPARQL templates. Every template is parsed once, when it
+ * is registered, and its variables act as parameter slots that are bound when
+ * the template is executed. The registry counts how often each template runs,
+ * and how long it takes.
+ *
+ */
+public class QueryRegistry
+{
+    private final Map<String, Query> queries = new LinkedHashMap<String, Query>();
+    private final Map<String, UpdateRequest> updates = new LinkedHashMap<String, UpdateRequest>();
+    private final Map<String, Stats> stats = new LinkedHashMap<String, Stats>();
+
+    /**
+     * Hit and latency counters of a template.
+     */
+    public static class Stats
+    {
+        private long hits;
+        private long nanos;
+
+        private Stats copy()
+        {
+            Stats c = new Stats();
+            c.hits = hits;
+            c.nanos = nanos;
+            return c;
+        }
+
+        public long getHits()
+        {
+            return hits;
+        }
+
+        /**
+         * @return total time spent executing the template, in nanoseconds
+         */
+        public long getNanos()
+        {
+            return nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d hits, %.2f ms total, %.3f ms mean", hits,
+                    nanos / 1e6, hits == 0 ? 0 : nanos / 1e6 / hits);
+        }
+    }
+
+    /**
+     * Values for the parameter slots of a template.
+     */
+    public static class Params
+    {
+        private final QuerySolutionMap binding = new QuerySolutionMap();
+
+        /**
+         * @param var
+         *            name of the variable, without the question mark
+         * @param value
+         *            to bind it to
+         * @return these params
+         */
+        public Params and(String var, RDFNode value)
+        {
+            binding.add(var, value);
+            return this;
+        }
+
+        QuerySolution asBinding()
+        {
+            return binding;
+        }
+    }
+
+    /**
+     * @return params binding var to value
+     */
+    public static Params with(String var, RDFNode value)
+    {
+        return new Params().and(var, value);
+    }
+
+    /**
+     * @return params that bind nothing
+     */
+    public static Params none()
+    {
+        return new Params();
+    }
+
+    /**
+     * Parse and register a SELECT or ASK query.
+     *
+     * @param name
+     *            of the template
+     * @param sparql
+     *            query, with variables as parameter slots
+     */
+    public void registerQuery(String name, String sparql)
+    {
+        queries.put(name, QueryFactory.create(sparql));
+        synchronized (this) {
+            stats.put(name, new Stats());
+        }
+    }
+
+    /**
+     * Parse and register an update. Since DATA blocks can not contain
+     * variables, templates use INSERT/DELETE with an empty WHERE instead.
+     *
+     * @param name
+     *            of the template
+     * @param sparql
+     *            update, with variables as parameter slots
+     */
+    public void registerUpdate(String name, String sparql)
+    {
+        updates.put(name, UpdateFactory.create(sparql));
+        synchronized (this) {
+            stats.put(name, new Stats());
+        }
+    }
+
+    /**
+     * Run a SELECT template against m.
+     *
+     * @return all solutions
+     */
+    public List<QuerySolution> select(String name, Model m, Params params)
+    {
+        return select(name, QueryExecutionFactory.create(query(name), m,
+                params.asBinding()));
+    }
+
+    /**
+     * Run a SELECT template against m, and give up after timeoutMillis. The
+     * timeout also bounds every SERVICE call of the template.
+     *
+     * @return all solutions
+     * @throws org.apache.jena.query.QueryCancelledException
+     *             if the query timed out
+     */
+    public List<QuerySolution> select(String name, Model m, Params params,
+            long timeoutMillis)
+    {
+        QueryExecution qexec = QueryExecutionFactory.create(query(name), m,
+                params.asBinding());
+        qexec.setTimeout(timeoutMillis);
+        // A number would only bound connecting; "connect,read" bounds both.
+        qexec.getContext().set(Service.queryTimeout,
+                timeoutMillis + "," + timeoutMillis);
+        return select(name, qexec);
+    }
+
+    /**
+     * Run a SELECT template against the dataset named in its FROM clauses.
+     *
+     * @return all solutions
+     */
+    public List<QuerySolution> select(String name, Params params)
+    {
+        return select(name, QueryExecutionFactory.create(query(name),
+                params.asBinding()));
+    }
+
+    /**
+     * Run an ASK template against m.
+     *
+     * @return the answer
+     */
+    public boolean ask(String name, Model m, Params params)
+    {
+        long start = System.nanoTime();
+        QueryExecution qexec = QueryExecutionFactory.create(query(name), m,
+                params.asBinding());
+        boolean answer = qexec.execAsk();
+        qexec.close();
+        count(name, start);
+        return answer;
+    }
+
+    /**
+     * Run an update template against m.
+     */
+    public void update(String name, Model m, Params params)
+    {
+        long start = System.nanoTime();
+        UpdateRequest request = updates.get(name);
+        if (request == null) {
+            throw new IllegalArgumentException("No update named " + name);
+        }
+        UpdateAction.execute(request, DatasetFactory.create(m),
+                params.asBinding());
+        count(name, start);
+    }
+
+    /**
+     * @return a copy of the counters of every registered template, by name,
+     *         taken while no template is counted
+     */
+    public synchronized Map<String, Stats> getStats()
+    {
+        Map<String, Stats> copy = new LinkedHashMap<String, Stats>();
+        for (Map.Entry<String, Stats> e : stats.entrySet()) {
+            copy.put(e.getKey(), e.getValue().copy());
+        }
+        return copy;
+    }
+
+    /**
+     * @return one line of counters per template, the slowest first
+     */
+    public String report()
+    {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<Map.Entry<String, Stats>>(
+                getStats().entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().nanos,
+                a.getValue().nanos));
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Stats> e : entries) {
+            sb.append(e.getKey()).append(": ").append(e.getValue())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    private List<QuerySolution> select(String name, QueryExecution qexec)
+    {
+        long start = System.nanoTime();
+        List<QuerySolution> list = new ArrayList<QuerySolution>();
+        ResultSet rSet = qexec.execSelect();
+        while (rSet.hasNext()) {
+            list.add(rSet.next());
+        }
+        qexec.close();
+        count(name, start);
+        return list;
+    }
+
+    private Query query(String name)
+    {
+        Query q = queries.get(name);
+        if (q == null) {
+            throw new IllegalArgumentException("No query named " + name);
+        }
+        return q;
+    }
+
+    private synchronized void count(String name, long start)
+    {
+        Stats s = stats.get(name);
+        s.hits++;
+        s.nanos += System.nanoTime() - start;
+    }
+}
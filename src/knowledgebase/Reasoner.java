@@ -2,35 +2,53 @@ package knowledgebase;
 
 import interfaces.ModelPublisher;
 import interfaces.ModelSubscriber;
+import knowledgebase.Components.Component;
+import knowledgebase.Condensation.Scc;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
-import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.InfModel;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.reasoner.ReasonerRegistry;
 import org.apache.jena.reasoner.ValidityReport;
-import org.apache.jena.update.UpdateAction;
-import org.apache.jena.update.UpdateFactory;
-import org.apache.jena.update.UpdateRequest;
+import org.apache.jena.reasoner.TriplePattern;
+import org.apache.jena.reasoner.rulesys.FBRuleInfGraph;
+import org.apache.jena.reasoner.rulesys.Functor;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.ReasonerVocabulary;
 
 import vocabs.JTMS;
 
@@ -39,17 +57,76 @@ import vocabs.JTMS;
  * is able to answer questions about belief and justifications, through
  * inference.
  * 
+ * Beliefs and justifications handed out stay usable after the reasoner builds
+ * them again, as every public method looks them up by resource if they are
+ * stale.
+ * 
  */
 public final class Reasoner implements ModelSubscriber, ModelPublisher
 {
     private final Fuseki db;
-    private Model inferredModel;
+    private InfModel inferredModel;
     private static Model reasonerDb;
     private final List<ModelSubscriber> modelSubscribers = new ArrayList<ModelSubscriber>();
     private final org.apache.jena.reasoner.Reasoner reasoner;
+
+    /**
+     * Every query of the reasoner, parsed once.
+     */
+    private static final QueryRegistry queries = new QueryRegistry();
+
+    static {
+        queries.registerQuery("instances", "SELECT ?r WHERE { ?r a ?type }");
+    }
     public static final String Graph = "http://apollo.nasa.gov/Reasoner";
-    private final HashMap<Resource, Belief> resourceToBelief = new HashMap<Resource, Belief>();
-    private final HashMap<Resource, Justification> resourceToJustification = new HashMap<Resource, Justification>();
+
+    /**
+     * Turns on the validity rules of an inference model for good. Unlike
+     * validate, which turns them on until the next removal.
+     */
+    private static final Triple VALIDATION_ON = Triple.create(NodeFactory
+            .createBlankNode(), ReasonerVocabulary.RB_VALIDATION.asNode(),
+            Functor.makeFunctorNode("on", new Node[] {}));
+
+    /**
+     * Properties of the RDFS and OWL vocabularies that relate individuals,
+     * and so do not change the schema.
+     */
+    private static final Set<Property> SCHEMA_INDIVIDUAL = new HashSet<Property>(
+            Arrays.asList(OWL.sameAs, OWL.differentFrom, RDFS.label,
+                    RDFS.comment, RDFS.seeAlso, RDFS.isDefinedBy));
+
+    /**
+     * Cached beliefs and justifications, interned to dense ids, and the labels
+     * of the beliefs.
+     */
+    private final BeliefTable table = new BeliefTable();
+
+    /**
+     * Dependency edges between beliefs and justifications. Built from the
+     * reasoner on the first update, then kept current by listening to the
+     * knowledge base.
+     */
+    private final DependencyIndex index;
+
+    /**
+     * Statements added to or removed from the knowledge base since the last
+     * update.
+     */
+    private final ChangeLog changes = new ChangeLog();
+    private Model followedModel;
+
+    /**
+     * Statements of the reasoner that have changed since it was last stored in
+     * the db.
+     */
+    private final ChangeLog unsaved = new ChangeLog();
+
+    /**
+     * Whether to push only the changes of the knowledge base through the
+     * inference model, rather than inferring everything again.
+     */
+    private boolean incremental = true;
 
     /**
      * The report of the last, failed inference. Is set to null every time
@@ -57,17 +134,259 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     private ValidityReport lastReport;
 
+    /**
+     * Upper bound on how many rounds a loop of beliefs is evaluated before it
+     * is given up on. Only reached when beliefs keep flipping each other,
+     * which takes an odd loop through some OUT list.
+     */
+    private static final int MAX_ROUNDS = 8;
+
+    /**
+     * Loops of beliefs that did not settle since the last update.
+     */
+    private final List<List<Belief>> unstableLoops = Collections
+            .synchronizedList(new ArrayList<List<Belief>>());
+
+    /**
+     * Number of passes currently running. Labels changed during a pass are
+     * written to the reasoner model when the outermost pass ends.
+     */
+    private final AtomicInteger labelPasses = new AtomicInteger();
+
+    /**
+     * Whether setting a belief to the label it already has is skipped.
+     */
+    private boolean skipUnchangedLabels = true;
+
+    /**
+     * Whether independent components of the dependency graph are labelled in
+     * parallel.
+     */
+    private boolean parallel = true;
+
+    /**
+     * Whether the state was restored from a snapshot, and the knowledge base
+     * has not changed since. The inference model is only built on the first
+     * change after a restore.
+     */
+    private boolean restored = false;
+
+    /**
+     * Components smaller than this, in number of nodes, are not split into
+     * more tasks.
+     */
+    private static final int SETTLE_GRAIN = 256;
+
+    /**
+     * Resources of the reasoner that are the same as each other.
+     */
+    private final SameAsIndex sameAs;
+
+    /**
+     * Statements about the seeAlso targets of each resource of the reasoner.
+     */
+    private final AnnotationIndex annotations = new AnnotationIndex(
+            () -> reasonerDb);
+
     public Reasoner(Fuseki db) {
         this.db = db;
         reasoner = ReasonerRegistry.getOWLMicroReasoner().bindSchema(
                 JTMS.getSchema());
 
-        reasonerDb = db.accessor.getModel(Graph);
+        // The reasoner graph is derived from the knowledge base, so it is
+        // not read back from the db; the first update or restore fills it,
+        // and stores it whole.
+        reasonerDb = ModelFactory.createDefaultModel();
+        reasonerDb.register(unsaved);
+        reasonerDb.removeAll();
+        index = new DependencyIndex(reasonerDb, this::dependenciesChanged);
+        sameAs = new SameAsIndex(Collections
+                .<Supplier<Model>> singletonList(() -> reasonerDb));
+    }
+
+    /**
+     * The lists of some justification were changed in the knowledge base, so
+     * count its antecedents again.
+     * 
+     * @param jRes
+     *            justification that changed
+     */
+    private void dependenciesChanged(Resource jRes)
+    {
+        Justification j = table.getJustification(jRes);
+        if (j != null) {
+            countAntecedents(j);
+        }
+    }
+
+    /**
+     * Build the dependency index from the reasoner, and have both the index and
+     * the change log follow every later change to the knowledge base.
+     * 
+     * @param knowledgeBase
+     *            to follow
+     */
+    private void follow(Model knowledgeBase)
+    {
+        if (followedModel == knowledgeBase) {
+            return;
+        }
+        if (followedModel != null) {
+            followedModel.unregister(index);
+            followedModel.unregister(changes);
+        }
+        index.build(reasonerDb);
+        changes.clear();
+        knowledgeBase.register(index);
+        knowledgeBase.register(changes);
+        followedModel = knowledgeBase;
+    }
+
+    /**
+     * Write the reasoner's statements, beliefs, justifications and labels to
+     * a binary snapshot, for the current state of knowledgeBase. Nothing is
+     * written unless the reasoner is up to date with knowledgeBase, as the
+     * snapshot is restored without reasoning again, nor if knowledgeBase has
+     * blank nodes, as it could not be told whether it changed.
+     * 
+     * @param f
+     *            file to write
+     * @param knowledgeBase
+     *            the reasoner was last updated with
+     * @return whether the snapshot was written
+     */
+    public boolean saveSnapshot(File f, Model knowledgeBase)
+    {
+        if (!isCurrent(knowledgeBase)) {
+            System.out.println("Not writing a snapshot, the reasoner is not"
+                    + " up to date with the knowledge base");
+            return false;
+        }
+
+        List<String> beliefs = new ArrayList<String>();
+        for (Belief b : table.getBeliefs()) {
+            beliefs.add(b.getResource().getURI());
+        }
+        List<String> justifications = new ArrayList<String>();
+        for (Justification j : table.getJustifications()) {
+            justifications.add(j.getResource().getURI());
+        }
+        if (beliefs.contains(null) || justifications.contains(null)) {
+            System.out.println("Not writing a snapshot, some belief or"
+                    + " justification has no IRI");
+            return false;
+        }
+        if (Snapshot.hasBlankNodes(knowledgeBase)) {
+            System.out.println("Not writing a snapshot, the knowledge base"
+                    + " has blank nodes");
+            return false;
+        }
+
+        try {
+            new Snapshot(Snapshot.fingerprint(knowledgeBase), reasonerDb,
+                    beliefs, justifications, table.snapshot()).write(f);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not write snapshot " + f + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * @return whether the last update succeeded, every change of knowledgeBase
+     *         since has been pushed through it, and no labelling is running
+     */
+    private boolean isCurrent(Model knowledgeBase)
+    {
+        return followedModel == knowledgeBase && changes.isEmpty()
+                && lastReport == null && labelPasses.get() == 0
+                && (inferredModel != null || restored);
+    }
+
+    /**
+     * Restore the reasoner from a snapshot, if it was written for the current
+     * state of knowledgeBase. Inference and labelling are skipped; the
+     * inference model is built again on the first update that has changes to
+     * push through it.
+     * 
+     * @param f
+     *            file to read
+     * @param knowledgeBase
+     *            to follow from now on
+     * @return whether the snapshot was current, and restored
+     */
+    public boolean restoreSnapshot(File f, Model knowledgeBase)
+    {
+        if (!f.exists() || Snapshot.hasBlankNodes(knowledgeBase)) {
+            return false;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = Snapshot.read(f);
+        } catch (IOException e) {
+            System.out.println("Could not read snapshot " + f + ": " + e);
+            return false;
+        }
+        if (snapshot.getFingerprint() != Snapshot.fingerprint(knowledgeBase)) {
+            return false;
+        }
+
+        // Removing everything is not logged statement by statement, so the
+        // restored graph is stored whole.
+        reasonerDb.removeAll();
+        reasonerDb.add(snapshot.getStatements());
+
+        table.clear();
+        for (String iri : snapshot.getBeliefs()) {
+            table.internBelief(reasonerDb.createResource(iri));
+        }
+        for (String iri : snapshot.getJustifications()) {
+            table.internJustification(reasonerDb.createResource(iri));
+        }
+        BitSet labels = snapshot.getLabels();
+        for (int id = 0; id < table.beliefCount(); id++) {
+            table.setLabel(id, labels.get(id));
+        }
+        // The labels are in the restored statements already.
+        table.takeChanged();
+
+        inferredModel = null;
+        lastReport = null;
+        if (followedModel == knowledgeBase) {
+            index.build(reasonerDb);
+            changes.clear();
+        } else {
+            follow(knowledgeBase);
+        }
+        for (Justification j : table.getJustifications()) {
+            countAntecedents(j);
+        }
+        restored = true;
+        persist();
+        return true;
+    }
+
+    /**
+     * @param incremental
+     *            whether only changes of the knowledge base are pushed through
+     *            the inference model on update
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
     }
 
     private boolean updateInferences(Model knowledgeBase)
     {
-        InfModel inf = ModelFactory.createInfModel(reasoner, knowledgeBase);
+        if (isIncremental(knowledgeBase)) {
+            return updateInferenceDelta();
+        }
+
+        // The inference model works on its own copy of the knowledge base, so
+        // that later changes can be pushed through it one by one.
+        Model base = ModelFactory.createDefaultModel();
+        base.add(knowledgeBase);
+        InfModel inf = ModelFactory.createInfModel(reasoner, base);
 
         ValidityReport rep = inf.validate();
 
@@ -76,12 +395,15 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
         if (rep.isValid()) {
             lastReport = null;
             inferredModel = inf;
+            changes.clear();
             reasonerDb.removeAll();
 
             reasonerDb.add(knowledgeBase.listStatements());
             reasonerDb.add(inferredModel.listStatements());
 
-            db.accessor.putModel(Graph, reasonerDb);
+            // Leave the validity rules on, so later updates can ask for the
+            // violations of just the resources they touch.
+            inferredModel.getGraph().add(VALIDATION_ON);
             return true;
         } else {
             lastReport = rep;
@@ -89,140 +411,626 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
         }
     }
 
+    /**
+     * @return whether the changes of knowledgeBase since the last update can
+     *         be pushed through the inference model. Not if the inference
+     *         model was not built from it, statements were changed in bulk,
+     *         or the schema changed, which may change what is inferred about
+     *         any resource.
+     */
+    private boolean isIncremental(Model knowledgeBase)
+    {
+        if (!incremental || inferredModel == null
+                || followedModel != knowledgeBase || changes.hasBulkChange()) {
+            return false;
+        }
+        for (Model m : Arrays.asList(changes.getAdded(), changes.getRemoved())) {
+            StmtIterator it = m.listStatements();
+            while (it.hasNext()) {
+                if (isSchema(it.next())) {
+                    it.close();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether st defines a class or a property, rather than stating
+     *         something about an individual
+     */
+    private static boolean isSchema(Statement st)
+    {
+        String ns = st.getPredicate().getNameSpace();
+        if (st.getPredicate().equals(RDF.type)) {
+            ns = st.getObject().isURIResource() ? st.getObject().asResource()
+                    .getNameSpace() : "";
+        } else if (SCHEMA_INDIVIDUAL.contains(st.getPredicate())) {
+            return false;
+        }
+        return ns.equals(RDF.getURI()) || ns.equals(RDFS.getURI())
+                || ns.equals(OWL.getURI());
+    }
+
+    /**
+     * Push the statements changed since the last update through the inference
+     * model, and bring the reasoner's statements in line with it. Only the
+     * statements about resources touched by the changes are compared: those
+     * the touched resources are the subject or object of, and, if support
+     * lists were linked in a new way, the inSameSupportList statements of
+     * every resource sharing a support list with them. The validity rules
+     * stay on in the inference model, and report the resource causing a
+     * violation, so only the touched resources are checked, and the whole
+     * model is only validated if one of them is reported.
+     * 
+     * @return whether inference was successful
+     */
+    private boolean updateInferenceDelta()
+    {
+        if (changes.isEmpty()) {
+            return lastReport == null;
+        }
+
+        Set<Node> subjects = new LinkedHashSet<Node>();
+        Set<Node> objects = new LinkedHashSet<Node>();
+        List<Statement> joins = new ArrayList<Statement>();
+        List<Statement> splits = new ArrayList<Statement>();
+        for (Model m : Arrays.asList(changes.getAdded(), changes.getRemoved())) {
+            for (Statement st : m.listStatements().toList()) {
+                Node o = st.getObject().asNode();
+                subjects.add(st.getSubject().asNode());
+                // A property used for the first time is inferred to be one.
+                subjects.add(st.getPredicate().asNode());
+                // Only the type of the subject changes with an rdf:type.
+                if (!o.isLiteral() && !st.getPredicate().equals(RDF.type)) {
+                    subjects.add(o);
+                    objects.add(o);
+                }
+                objects.add(st.getSubject().asNode());
+                if (inferredModel.contains(st.getPredicate(),
+                        RDFS.subPropertyOf, JTMS.IN_SAME_SUPPORT_LIST)) {
+                    (m == changes.getAdded() ? joins : splits).add(st);
+                }
+            }
+        }
+
+        inferredModel.remove(changes.getRemoved());
+        inferredModel.add(changes.getAdded());
+        changes.clear();
+
+        // The reasoner still has the statements inferred before.
+        Graph before = reasonerDb.getGraph();
+        Graph after = inferredModel.getGraph();
+        Set<Node> related = relinked(joins, splits, before, after);
+        Set<Triple> old = statements(before, subjects, objects, related);
+        Set<Triple> now = statements(after, subjects, objects, related);
+
+        if (hasViolations(subjects)) {
+            ValidityReport rep = inferredModel.validate();
+            if (!rep.isValid()) {
+                // Start over from the knowledge base next time.
+                lastReport = rep;
+                inferredModel = null;
+                return false;
+            }
+        }
+        lastReport = null;
+
+        List<Statement> stale = new ArrayList<Statement>();
+        for (Triple t : old) {
+            if (t.getPredicate().equals(JTMS.HAS_STATE.asNode())) {
+                // Labels are not inferred; keep them for as long as there is
+                // a belief to label.
+                if (!after.contains(t.getSubject(), RDF.type.asNode(),
+                        JTMS.BELIEF.asNode())) {
+                    stale.add(reasonerDb.asStatement(t));
+                }
+            } else if (!now.contains(t)) {
+                stale.add(reasonerDb.asStatement(t));
+            }
+        }
+        List<Statement> inferred = new ArrayList<Statement>();
+        for (Triple t : now) {
+            if (!old.contains(t)) {
+                inferred.add(reasonerDb.asStatement(t));
+            }
+        }
+        reasonerDb.remove(stale);
+        reasonerDb.add(inferred);
+        return true;
+    }
+
+    /**
+     * Every resource sharing a support list with the ends of a changed
+     * support link, before or after the change. The transitive
+     * inSameSupportList statements only change if a link joins or splits
+     * support lists, which it does not if its ends shared a support list
+     * already, before it was added or after it was removed.
+     * 
+     * @return the related resources, or none if support lists are linked as
+     *         they were
+     */
+    private static Set<Node> relinked(List<Statement> joins,
+            List<Statement> splits, Graph before, Graph after)
+    {
+        Set<Node> related = new LinkedHashSet<Node>();
+        if (!relinks(joins, before) && !relinks(splits, after)) {
+            return related;
+        }
+        Node same = JTMS.IN_SAME_SUPPORT_LIST.asNode();
+        for (List<Statement> links : Arrays.asList(joins, splits)) {
+            for (Statement st : links) {
+                for (Node end : Arrays.asList(st.getSubject().asNode(), st
+                        .getObject().asNode())) {
+                    related.add(end);
+                    for (Graph g : Arrays.asList(before, after)) {
+                        ExtendedIterator<Triple> it = g.find(Node.ANY, same,
+                                end);
+                        while (it.hasNext()) {
+                            related.add(it.next().getSubject());
+                        }
+                    }
+                }
+            }
+        }
+        return related;
+    }
+
+    /**
+     * @return whether the ends of some link do not share a support list in g
+     */
+    private static boolean relinks(List<Statement> links, Graph g)
+    {
+        Node same = JTMS.IN_SAME_SUPPORT_LIST.asNode();
+        for (Statement st : links) {
+            Node s = st.getSubject().asNode();
+            Node o = st.getObject().asNode();
+            if (!g.contains(s, same, o) || !g.contains(o, same, s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the statements of g about subjects, pointing at objects, and
+     *         the inSameSupportList statements of related
+     */
+    private static Set<Triple> statements(Graph g, Set<Node> subjects,
+            Set<Node> objects, Set<Node> related)
+    {
+        Set<Triple> set = new HashSet<Triple>();
+        for (Node n : subjects) {
+            set.addAll(g.find(n, Node.ANY, Node.ANY).toList());
+        }
+        for (Node n : objects) {
+            set.addAll(g.find(Node.ANY, Node.ANY, n).toList());
+        }
+        for (Node n : related) {
+            set.addAll(g.find(n, JTMS.IN_SAME_SUPPORT_LIST.asNode(), Node.ANY)
+                    .toList());
+        }
+        return set;
+    }
+
+    /**
+     * @return whether the validity rules report some of the given resources,
+     *         or the inference model can not tell without validating it whole
+     */
+    private boolean hasViolations(Set<Node> resources)
+    {
+        if (!(inferredModel.getGraph() instanceof FBRuleInfGraph)) {
+            return true;
+        }
+        // Reports are hidden from find.
+        FBRuleInfGraph g = (FBRuleInfGraph) inferredModel.getGraph();
+        for (Node n : resources) {
+            ExtendedIterator<Triple> it = g.findFull(new TriplePattern(n,
+                    ReasonerVocabulary.RB_VALIDATION_REPORT.asNode(), null));
+            boolean reported = it.hasNext();
+            it.close();
+            if (reported) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Store the statements of the reasoner that changed since the last time,
+     * as a single update request to the db.
+     */
+    private void persist()
+    {
+        if (unsaved.isEmpty()) {
+            return;
+        }
+        if (unsaved.hasBlankNodes() || unsaved.hasBulkChange()) {
+            // Blank nodes can not be matched by DELETE DATA, and statements
+            // changed in bulk are not in the log, so fall back to storing the
+            // whole graph.
+            db.putModel(Graph, reasonerDb);
+        } else {
+            db.update(unsaved.toUpdateRequest(Graph));
+        }
+        unsaved.clear();
+    }
+
     /**
      * Make sure all Justifications and Beliefs in the knowledgebase are
-     * represented in the reasoner.
+     * represented in the reasoner, and label them. Components of the
+     * dependency graph are labelled in parallel.
+     * 
+     * @param touched
+     *            resources changed since the last update, or null to label
+     *            every component. Otherwise only components containing a
+     *            touched resource are labelled again.
      */
-    private void updateCachedResources()
+    private void updateCachedResources(Set<Resource> touched)
     {
+        beginLabelPass();
+        try {
+            cacheResources();
+
+            Components components = new Components(table, index);
+            List<Component> dirty;
+            if (touched == null) {
+                dirty = components.getComponents();
+            } else {
+                dirty = affected(components, touched);
+                for (Component c : dirty) {
+                    reset(c);
+                }
+            }
+            settle(dirty);
+        } finally {
+            endLabelPass();
+        }
+    }
+
+    /**
+     * Cache beliefs and justifications that are not cached yet.
+     */
+    private void cacheResources()
+    {
+        // Cache beliefs first, so new justifications count them.
+        List<Belief> added = new ArrayList<Belief>();
+        for (Resource bRes : querySingle("instances", "r",
+                QueryRegistry.with("type", JTMS.BELIEF))) {
+            if (!table.containsBelief(bRes)) {
+                added.add(cacheBelief(bRes));
+            }
+        }
+
         // Cache justifications.
-        String justfQ = String.format("SELECT ?j WHERE { ?j a <%s> }",
-                JTMS.JUSTIFICATION);
-        for (Resource jRes : querySingle(justfQ, "j")) {
-            if (!resourceToJustification.containsKey(jRes)) {
+        for (Resource jRes : querySingle("instances", "r",
+                QueryRegistry.with("type", JTMS.JUSTIFICATION))) {
+            if (!table.containsJustification(jRes)) {
                 cacheJustification(jRes);
             }
         }
 
-        // Cache beliefs.
-        String beliefQ = String.format("SELECT ?b WHERE { ?b a <%s> }",
-                JTMS.BELIEF);
-        for (Resource bRes : querySingle(beliefQ, "b")) {
-            if (!resourceToBelief.containsKey(bRes)) {
-                cacheBelief(bRes);
+        // Justifications cached earlier have not counted the new beliefs.
+        for (Belief b : added) {
+            for (Justification j : castToJustification(getConsequences(b))) {
+                if (j != null) {
+                    countAntecedents(j);
+                }
             }
         }
+    }
 
-        // Propagate beliefs, from the leaves.
-        for (Belief b : getLeafBeliefs()) {
-            propagateBelief(b);
+    /**
+     * @return the components that contain some touched resource
+     */
+    private List<Component> affected(Components components,
+            Set<Resource> touched)
+    {
+        Set<Component> dirty = new LinkedHashSet<Component>();
+        for (Resource r : touched) {
+            Component c = components.get(r);
+            if (c != null) {
+                dirty.add(c);
+            }
         }
+        return new ArrayList<Component>(dirty);
+    }
 
-        // For any leaf justifications, we'll mark all its consequents as
-        // believed. A leaf justification always holds.
-        for (Justification jLeaf : getJustifications()) {
-            if (!jLeaf.getResource().hasProperty(JTMS.HAS_ANTECEDENT)) {
-                StmtIterator ji = jLeaf.getResource().listProperties(
-                        JTMS.JUSTIFIES);
-                while (ji.hasNext()) {
-                    Resource jr = ji.next().getResource();
-                    if (resourceToBelief.containsKey(jr)) {
-                        Belief b = resourceToBelief.get(jr);
-                        setBeliefState(b, true);
-                        propagateBelief(b);
-                    }
+    /**
+     * Mark every belief of c as not held, and count its justifications again,
+     * so c can be labelled from scratch.
+     */
+    private void reset(Component c)
+    {
+        for (Belief b : c.getBeliefs()) {
+            setBeliefState(b, false);
+        }
+        for (Justification j : c.getJustifications()) {
+            countAntecedents(j);
+        }
+    }
+
+    /**
+     * Label the given components, in parallel if there are several.
+     */
+    private void settle(List<Component> components)
+    {
+        if (parallel && components.size() > 1) {
+            ForkJoinPool.commonPool().invoke(
+                    new SettleTask(components, 0, components.size()));
+        } else {
+            for (Component c : components) {
+                settle(c);
+            }
+        }
+    }
+
+    /**
+     * Label the beliefs of a single component. Only touches the beliefs and
+     * justifications of c, so components can be settled concurrently.
+     */
+    private void settle(Component c)
+    {
+        BitSet dirty = new BitSet();
+        for (Belief b : c.getBeliefs()) {
+            dirty.set(b.getId());
+        }
+        label(c.getBeliefs(), dirty);
+    }
+
+    /**
+     * Settles a range of components, splitting it until the range is small.
+     */
+    private class SettleTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Component> components;
+        private final int from;
+        private final int to;
+
+        SettleTask(List<Component> components, int from, int to) {
+            this.components = components;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                size += components.get(i).size();
+            }
+
+            if (to - from == 1 || size <= SETTLE_GRAIN) {
+                for (int i = from; i < to; i++) {
+                    settle(components.get(i));
                 }
+                return;
             }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new SettleTask(components, from, mid), new SettleTask(
+                    components, mid, to));
         }
     }
 
+    /**
+     * @param parallel
+     *            whether independent components are labelled in parallel
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
     private void clearCachedResources()
     {
-        resourceToBelief.clear();
-        resourceToJustification.clear();
+        table.clear();
     }
 
-    private List<Resource> querySingle(String sparql, String var)
+    /**
+     * @return whether some touched belief or justification is cached, but no
+     *         longer exists in the reasoner
+     */
+    private boolean removesCachedResources(Set<Resource> touched)
     {
-        return querySingle(sparql, var, reasonerDb);
+        for (Resource r : touched) {
+            if (table.containsBelief(r)
+                    && !reasonerDb.contains(r, RDF.type, JTMS.BELIEF)) {
+                return true;
+            }
+            if (table.containsJustification(r)
+                    && !reasonerDb.contains(r, RDF.type, JTMS.JUSTIFICATION)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Provide an easy way to query the reasoner.
      * 
-     * @param sparql
-     *            to execute
+     * @param name
+     *            of the registered query to execute
      * @param var
      *            to return
-     * @param m
-     *            model to query
+     * @param params
+     *            bound in the query
      * @return a list of resources produced by the query
      */
-    private List<Resource> querySingle(String sparql, String var, Model m)
+    private List<Resource> querySingle(String name, String var,
+            QueryRegistry.Params params)
     {
-        Query query = QueryFactory.create(sparql);
         List<Resource> list = new ArrayList<Resource>();
-        QueryExecution qexec = QueryExecutionFactory.create(query, m);
-        ResultSet rSet = qexec.execSelect();
-
-        for (; rSet.hasNext();) {
-            QuerySolution soln = rSet.next();
+        for (QuerySolution soln : queries.select(name, reasonerDb, params)) {
             Node n = soln.get(var).asNode();
-            Resource res = reasonerDb.createResource(n.getURI());
-            list.add(res);
+            list.add(reasonerDb.createResource(n.getURI()));
         }
-        qexec.close();
         return list;
     }
 
     /**
-     * A recursive propagation of the TMS tree from bottom to up.
+     * Propagate a change of belief up the TMS tree, from bottom to up. Only
+     * beliefs that depend on the belief are evaluated again, in topological
+     * order, so every belief outside of a loop is evaluated at most once.
+     * Loops are evaluated until they settle, or given up on after MAX_ROUNDS.
      * 
      * @param belief
+     *            that changed
+     * @return the number of beliefs evaluated
      */
-    public void propagateBelief(Belief belief)
-    {
-        // List of Beliefs now OUT or IN.
-        List<Belief> newOutBeliefs = new ArrayList<Belief>();
-        List<Belief> newInBeliefs = new ArrayList<Belief>();
-
-        // Walk up the justification tree and update beliefs in the parent
-        // justifcations.
-        List<Justification> consequences = castToJustification(getConsequences(belief));
-        for (Justification justification : consequences) {
-            boolean holds = holds(justification);
-            List<Belief> consequents = castToBeliefs(getConsequents(justification));
-            for (Belief aBelief : consequents) {
-                if (holds) {
-                    // We can immediately mark this belief as held, since
-                    // any single justification will do.
-                    newInBeliefs.add(aBelief);
-                } else {
-                    // We need to check this beliefs list of justifications,
-                    // and see if we can find one that holds.
-                    boolean aHolds = false;
-                    for (Justification aJust : castToJustification(getJustifications(aBelief))) {
-                        if (holds(aJust)) {
-                            aHolds = true;
-                        }
-                    }
+    public int propagateBelief(Belief belief)
+    {
+        belief = table.current(belief);
+        if (belief == null) {
+            return 0;
+        }
+        beginLabelPass();
+        try {
+            BitSet dirty = new BitSet();
+            markConsequents(belief, dirty);
+            return label(downstream(belief), dirty);
+        } finally {
+            endLabelPass();
+        }
+    }
 
-                    if (!aHolds) {
-                        newOutBeliefs.add(aBelief);
+    /**
+     * @return belief, and every belief that depends on it
+     */
+    private List<Belief> downstream(Belief belief)
+    {
+        List<Belief> reached = new ArrayList<Belief>();
+        BitSet seen = new BitSet();
+        Deque<Belief> worklist = new ArrayDeque<Belief>();
+        worklist.add(belief);
+        seen.set(belief.getId());
+
+        while (!worklist.isEmpty()) {
+            Belief current = worklist.poll();
+            reached.add(current);
+            for (Justification j : castToJustification(getConsequences(current))) {
+                if (j == null) {
+                    continue;
+                }
+                for (Belief b : castToBeliefs(getConsequents(j))) {
+                    if (b != null && !seen.get(b.getId())) {
+                        seen.set(b.getId());
+                        worklist.add(b);
                     }
+                }
+            }
+        }
+        return reached;
+    }
 
+    /**
+     * Evaluate the dirty beliefs among the given ones again, in topological
+     * order. A belief that changes makes the beliefs depending on it dirty.
+     * Beliefs that are not justified are never evaluated, as their label is
+     * only set from the outside.
+     * 
+     * @param beliefs
+     *            to label, closed under dependence
+     * @param dirty
+     *            ids of beliefs that need to be evaluated again
+     * @return the number of beliefs evaluated
+     */
+    private int label(List<Belief> beliefs, BitSet dirty)
+    {
+        int evaluated = 0;
+        for (Scc scc : new Condensation(beliefs, table, index).getOrder()) {
+            if (scc.isCyclic()) {
+                evaluated += settleLoop(scc, dirty);
+                continue;
+            }
+            Belief b = scc.getBeliefs().get(0);
+            if (dirty.get(b.getId()) && index.isJustified(b.getResource())) {
+                evaluated++;
+                if (evaluate(b)) {
+                    markConsequents(b, dirty);
                 }
             }
         }
+        return evaluated;
+    }
 
-        // XXX: here be recursion.
-        for (Belief b : newOutBeliefs) {
-            setBeliefState(b, false);
-            propagateBelief(b);
+    /**
+     * Evaluate a loop of beliefs until no belief in it changes. A loop that is
+     * still changing after MAX_ROUNDS is reported, and left as it is.
+     * 
+     * @return the number of beliefs evaluated
+     */
+    private int settleLoop(Scc scc, BitSet dirty)
+    {
+        boolean isDirty = false;
+        for (Belief b : scc.getBeliefs()) {
+            isDirty |= dirty.get(b.getId());
+        }
+        if (!isDirty) {
+            return 0;
+        }
+
+        int evaluated = 0;
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            for (Belief b : scc.getBeliefs()) {
+                evaluated++;
+                if (evaluate(b)) {
+                    changed = true;
+                    markConsequents(b, dirty);
+                }
+            }
+            if (!changed) {
+                return evaluated;
+            }
+        }
+
+        StringBuilder names = new StringBuilder();
+        for (Belief b : scc.getBeliefs()) {
+            names.append(" ").append(b.getName());
+        }
+        System.out.println("Loop of " + scc.getBeliefs().size()
+                + " beliefs does not settle:" + names);
+        unstableLoops.add(scc.getBeliefs());
+        return evaluated;
+    }
+
+    /**
+     * Set b to its state, given its justifications.
+     * 
+     * @return whether the label of b changed
+     */
+    private boolean evaluate(Belief b)
+    {
+        boolean state = getState(b);
+        boolean changed = state != getBeliefState(b);
+        setBeliefState(b, state);
+        return changed;
+    }
+
+    private void markConsequents(Belief b, BitSet dirty)
+    {
+        for (Resource j : index.getConsequences(b.getResource())) {
+            for (Resource c : index.getConsequents(j)) {
+                Belief consequent = table.getBelief(c);
+                if (consequent != null) {
+                    dirty.set(consequent.getId());
+                }
+            }
         }
-        for (Belief b : newInBeliefs) {
-            setBeliefState(b, true);
-            propagateBelief(b);
+    }
+
+    /**
+     * @return loops of beliefs that did not settle since the last update
+     */
+    public List<List<Belief>> getUnstableLoops()
+    {
+        synchronized (unstableLoops) {
+            return new ArrayList<List<Belief>>(unstableLoops);
         }
     }
 
@@ -234,10 +1042,29 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public void update(Model knowledgeBase)
     {
+        // Nothing changed since the state was restored from a snapshot.
+        if (restored && followedModel == knowledgeBase && changes.isEmpty()) {
+            return;
+        }
+        restored = false;
+
+        // Only components touched since the last update need to be labelled
+        // again, as long as the inference is incremental too.
+        Set<Resource> touched = null;
+        if (isIncremental(knowledgeBase)) {
+            touched = changes.getTouched();
+        }
+
         if (updateInferences(knowledgeBase)) {
-            clearCachedResources();
-            updateCachedResources();
-            db.accessor.putModel(Graph, reasonerDb);
+            follow(knowledgeBase);
+            unstableLoops.clear();
+            if (touched == null || removesCachedResources(touched)) {
+                clearCachedResources();
+                updateCachedResources(null);
+            } else {
+                updateCachedResources(touched);
+            }
+            persist();
         } else {
             System.out.println("Updated Reasoner, but there were conflicts:");
             for (Iterator<?> i = lastReport.getReports(); i.hasNext();) {
@@ -248,6 +1075,14 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
         }
     }
 
+    /**
+     * @return the registry of reasoner queries, with their counters
+     */
+    public QueryRegistry getQueries()
+    {
+        return queries;
+    }
+
     /**
      * @return a report on the most recent failed inference
      */
@@ -258,9 +1093,8 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
 
     public Belief cacheBelief(Resource resource)
     {
-        Belief b = new Belief(resource);
+        Belief b = table.internBelief(resource);
         setBeliefState(b, false);
-        resourceToBelief.put(resource, b);
         return b;
     }
 
@@ -307,8 +1141,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public boolean isInSomeJustificationList(Belief b)
     {
-        return b.getResource().hasProperty(JTMS.SUPPORTS)
-                || b.getResource().hasProperty(JTMS.OPPOSES);
+        return index.isAntecedent(b.getResource());
     }
 
     /**
@@ -316,10 +1149,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Resource> getConsequences(Belief b)
     {
-        // Select all Justifications which have this belief as an antecedent
-        String q = String.format("SELECT ?o WHERE { ?o <%s> <%s> }",
-                JTMS.HAS_ANTECEDENT, b.getResource());
-        return querySingle(q, "o");
+        return index.getConsequences(b.getResource());
     }
 
     /**
@@ -327,66 +1157,73 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Resource> getJustifications(Belief b)
     {
-        // Select all Justifications which have this belief as a consequent
-        String q = String.format("SELECT ?j WHERE { ?j <%s> <%s> }",
-                JTMS.JUSTIFIES, b.getResource());
-        return querySingle(q, "j");
+        return index.getJustifications(b.getResource());
     }
 
     public Justification cacheJustification(Resource resource)
     {
-        Justification js = new Justification(resource);
-        resourceToJustification.put(resource, js);
-        js.setHolds(holds(js));
+        Justification js = table.internJustification(resource);
+        countAntecedents(js);
         return js;
     }
 
     /**
-     * A Justification holds if: - Both IN and OUT lists are empty - or all
-     * IN-list beliefs are justified AND all OUT-list beliefs are not justified.
+     * Count the IN-list beliefs of j that are not held, and the OUT-list
+     * beliefs of j that are held. From then on, the counters are kept up to
+     * date by setBeliefState.
      * 
      * @param j
-     *            to ask
-     * @return whether or not j holds
+     *            to count
      */
-    public boolean holds(Justification j)
+    private void countAntecedents(Justification j)
     {
-        boolean inlistHaveNotHeldBeliefs = ask(String
-                .format("ASK { <%s> <%s> ?inBelief . ?inBelief <%s> false ."
-                        + " FILTER NOT EXISTS { ?inBelief a <%s> } }",
-                        j.getResource(), JTMS.HAS_SUPPORT, JTMS.HAS_STATE,
-                        JTMS.PREMISE));
-        boolean inlistHaveContradictions = ask(String.format(
-                "ASK { <%s> <%s> ?inBelief . ?inBelief a <%s> . }",
-                j.getResource(), JTMS.HAS_SUPPORT, JTMS.CONTRADICTION));
+        int inNotHeld = 0;
+        for (Belief b : getInList(j)) {
+            if (b != null && !isHeld(b, getBeliefState(b))) {
+                inNotHeld++;
+            }
+        }
 
-        boolean outlistHaveHeldBeliefs = ask(String.format(
-                "ASK { <%s> <%s> ?outBelief . ?outBelief <%s> true ."
-                        + " FILTER NOT EXISTS { ?outBelief a <%s> } }",
-                j.getResource(), JTMS.HAS_OPPOSITION, JTMS.HAS_STATE,
-                JTMS.CONTRADICTION));
-        boolean outlistHavePremise = ask(String.format(
-                "ASK { <%s> <%s> ?outBelief . ?outBelief a <%s> . }",
-                j.getResource(), JTMS.HAS_OPPOSITION, JTMS.PREMISE));
+        int outHeld = 0;
+        for (Belief b : getOutList(j)) {
+            if (b != null && isHeld(b, getBeliefState(b))) {
+                outHeld++;
+            }
+        }
+
+        j.setCounters(inNotHeld, outHeld);
+    }
 
-        return !inlistHaveContradictions && !inlistHaveNotHeldBeliefs
-                && !outlistHavePremise && !outlistHaveHeldBeliefs;
+    /**
+     * Whether b counts as held in the lists of a justification. Premises always
+     * do, contradictions never do.
+     * 
+     * @param b
+     *            to ask
+     * @param state
+     *            label of b
+     * @return whether b is held
+     */
+    private boolean isHeld(Belief b, boolean state)
+    {
+        if (b.isContradiction()) {
+            return false;
+        }
+        return state || b.isPremise();
     }
 
     /**
-     * Helper to perform asks.
+     * A Justification holds if: - Both IN and OUT lists are empty - or all
+     * IN-list beliefs are justified AND all OUT-list beliefs are not justified.
      * 
-     * @param query
-     *            to execute
-     * @return yes/no in bool form
+     * @param j
+     *            to ask
+     * @return whether or not j holds
      */
-    private boolean ask(String query)
+    public boolean holds(Justification j)
     {
-        Query askQ = QueryFactory.create(query);
-        QueryExecution askQE = QueryExecutionFactory.create(askQ, reasonerDb);
-        boolean solution = askQE.execAsk();
-        askQE.close();
-        return solution;
+        Justification current = table.current(j);
+        return current != null && current.getHolds();
     }
 
     /**
@@ -398,9 +1235,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Resource> getAntecedents(Justification j)
     {
-        String q = String.format("SELECT ?belief WHERE { ?belief <%s> <%s> }",
-                JTMS.ANTECEDENT_OF, j.getResource());
-        return querySingle(q, "belief");
+        return index.getAntecedents(j.getResource());
     }
 
     /**
@@ -413,9 +1248,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Resource> getConsequents(Justification j)
     {
-        String q = String.format("SELECT ?belief WHERE { ?belief <%s> <%s> }",
-                JTMS.JUSTIFIED_BY, j.getResource());
-        return querySingle(q, "belief");
+        return index.getConsequents(j.getResource());
     }
 
     /**
@@ -423,12 +1256,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Belief> getBeliefs()
     {
-        List<Belief> beliefs = new ArrayList<Belief>();
-
-        for (Belief b : resourceToBelief.values()) {
-            beliefs.add(b);
-        }
-        return beliefs;
+        return table.getBeliefs();
     }
 
     /**
@@ -440,7 +1268,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
         List<Belief> leaves = new ArrayList<Belief>();
 
         for (Belief leaf : getBeliefs()) {
-            if (!leaf.getResource().hasProperty(JTMS.JUSTIFIED_BY)) {
+            if (!index.isJustified(leaf.getResource())) {
                 leaves.add(leaf);
             }
         }
@@ -453,12 +1281,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Justification> getJustifications()
     {
-        List<Justification> justifications = new ArrayList<Justification>();
-
-        for (Justification j : resourceToJustification.values()) {
-            justifications.add(j);
-        }
-        return justifications;
+        return table.getJustifications();
     }
 
     /**
@@ -507,7 +1330,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
     {
         List<Belief> l = new ArrayList<Belief>();
         for (Resource n : list) {
-            l.add(resourceToBelief.get(n));
+            l.add(table.getBelief(n));
         }
         return l;
     }
@@ -516,7 +1339,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
     {
         List<Justification> l = new ArrayList<Justification>();
         for (Resource n : list) {
-            l.add(resourceToJustification.get(n));
+            l.add(table.getJustification(n));
         }
         return l;
     }
@@ -532,7 +1355,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
     {
         // If we got new INs, let's propagate all our antecedents
         for (Resource b : getAntecedents(justification)) {
-            propagateBelief(resourceToBelief.get(b));
+            propagateBelief(table.getBelief(b));
         }
 
         for (ModelSubscriber s : modelSubscribers) {
@@ -635,10 +1458,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Belief> getInList(Justification j)
     {
-        String q = String.format("SELECT ?belief WHERE { ?belief <%s> <%s> }",
-                JTMS.SUPPORTS, j.getResource());
-        List<Belief> getIn = castToBeliefs(querySingle(q, "belief"));
-        return getIn;
+        return castToBeliefs(index.getInList(j.getResource()));
     }
 
     /**
@@ -648,9 +1468,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public List<Belief> getOutList(Justification j)
     {
-        String q = String.format("SELECT ?belief WHERE { ?belief <%s> <%s> }",
-                JTMS.OPPOSES, j.getResource());
-        return castToBeliefs(querySingle(q, "belief"));
+        return castToBeliefs(index.getOutList(j.getResource()));
     }
 
     @Override
@@ -662,7 +1480,7 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
     public Belief getBelief(String resourceURI)
     {
         Resource r = reasonerDb.getResource(resourceURI);
-        return resourceToBelief.get(r);
+        return table.getBelief(r);
     }
 
     /**
@@ -673,16 +1491,101 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public void setBeliefState(Belief b, boolean newState)
     {
-        String beliefURI = b.getResource().getURI();
-        String deleteOldState = String.format("DELETE DATA { <%s> <%s> %s }",
-                beliefURI, JTMS.HAS_STATE, new Boolean(!newState).toString());
+        b = table.current(b);
+        if (b == null) {
+            return;
+        }
+        boolean oldState = getBeliefState(b);
+        if (skipUnchangedLabels && oldState == newState
+                && table.hasLabel(b.getId())) {
+            return;
+        }
+        boolean wasHeld = isHeld(b, oldState);
+
+        table.setLabel(b.getId(), newState);
+        if (labelPasses.get() == 0) {
+            writeLabels();
+        }
+
+        // Let the justifications having b as an antecedent know.
+        boolean held = isHeld(b, newState);
+        if (held != wasHeld) {
+            for (Justification j : castToJustification(index.getSupported(b
+                    .getResource()))) {
+                if (j != null) {
+                    j.inChanged(held);
+                }
+            }
+            for (Justification j : castToJustification(index.getOpposed(b
+                    .getResource()))) {
+                if (j != null) {
+                    j.outChanged(held);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param skip
+     *            whether setting a belief to the label it already has is
+     *            skipped
+     */
+    public void setSkipUnchangedLabels(boolean skip)
+    {
+        skipUnchangedLabels = skip;
+    }
+
+    /**
+     * Start collecting labels instead of writing them one by one.
+     */
+    private void beginLabelPass()
+    {
+        labelPasses.incrementAndGet();
+    }
+
+    /**
+     * End a pass, and write the collected labels if it was the outermost.
+     */
+    private void endLabelPass()
+    {
+        if (labelPasses.decrementAndGet() == 0) {
+            writeLabels();
+        }
+    }
+
+    /**
+     * Write every label changed since the last time to the reasoner model in
+     * one batch, so the stored reasoner graph carries them.
+     */
+    private void writeLabels()
+    {
+        BitSet changed = table.takeChanged();
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        List<Statement> stale = new ArrayList<Statement>();
+        List<Statement> fresh = new ArrayList<Statement>();
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed
+                .nextSetBit(id + 1)) {
+            Resource r = table.getBelief(id).getResource();
+            boolean state = table.getLabel(id);
+            stale.add(reasonerDb.createStatement(r, JTMS.HAS_STATE,
+                    reasonerDb.createTypedLiteral(!state)));
+            fresh.add(reasonerDb.createStatement(r, JTMS.HAS_STATE,
+                    reasonerDb.createTypedLiteral(state)));
+        }
 
-        String insertNewState = String.format("INSERT DATA { <%s> <%s> %s }",
-                beliefURI, JTMS.HAS_STATE, new Boolean(newState).toString());
+        reasonerDb.remove(stale);
+        reasonerDb.add(fresh);
+    }
 
-        UpdateRequest request = UpdateFactory.create();
-        request.add(deleteOldState).add(insertNewState);
-        UpdateAction.execute(request, reasonerDb);
+    /**
+     * @return a copy of all belief labels, indexed by belief id
+     */
+    public BitSet getLabels()
+    {
+        return table.snapshot();
     }
 
     /**
@@ -691,15 +1594,8 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
      */
     public boolean getBeliefState(Belief b)
     {
-        String askStateSparql = String.format("ASK { <%s> <%s> %s }", b
-                .getResource().getURI(), JTMS.HAS_STATE, new Boolean(true)
-                .toString());
-        Query askStateQuery = QueryFactory.create(askStateSparql);
-        QueryExecution exec = QueryExecutionFactory.create(askStateQuery,
-                reasonerDb);
-        boolean heldState = exec.execAsk();
-        exec.close();
-        return heldState;
+        Belief current = table.current(b);
+        return current != null && table.getLabel(current.getId());
     }
 
     // Return ALL statements about a belief, including those inferred via
@@ -707,40 +1603,36 @@ public final class Reasoner implements ModelSubscriber, ModelPublisher
     public List<Statement> getStatements(Belief b)
     {
         Resource br = reasonerDb.getResource(b.getResource().getURI());
-        List<Statement> list = new ArrayList<Statement>();
-
-        // Find all seeAlso triples for our belief b, then add the properties
-        // of the seeAlso objects to the list of statements.
-        StmtIterator seeAlsoIt = br.listProperties(RDFS.seeAlso);
-        while (seeAlsoIt.hasNext()) {
-            System.out.println("had seealso");
-            Statement see = seeAlsoIt.next();
-            StmtIterator seeProps = see.getObject().asResource()
-                    .listProperties();
-            while (seeProps.hasNext()) {
-                list.add(seeProps.next());
+        Set<Statement> set = new LinkedHashSet<Statement>();
+
+        // The properties of the seeAlso objects of our belief b are indexed.
+        // Add them, and the properties of everything the seeAlso objects are
+        // the same as, to the list of statements.
+        for (Statement s : new StatementSource(annotations.get(br),
+                reasonerDb)) {
+            set.add(s);
+        }
+        for (RDFNode target : reasonerDb.listObjectsOfProperty(br,
+                RDFS.seeAlso).toList()) {
+            if (!target.isResource()) {
+                continue;
+            }
+            for (Resource alias : sameAs.getAliases(target.asResource())) {
+                if (!alias.equals(target)) {
+                    set.addAll(reasonerDb.listStatements(alias, null,
+                            (RDFNode) null).toList());
+                }
             }
         }
 
-        return list;
+        return new ArrayList<Statement>(set);
     }
 
     /**
-     * @return all belief statements
+     * @return the statements of the reasoner, read lazily
      */
-    public List<Statement> getBeliefStatements()
+    public StatementSource getStatementSource()
     {
-        List<Statement> list = new ArrayList<Statement>();
-        StmtIterator iter = reasonerDb.listStatements();
-        while (iter.hasNext()) {
-            Statement n = iter.next();
-            StmtIterator types = n.getSubject().listProperties(RDF.type);
-            while (types.hasNext()) {
-                Statement type = types.next();
-                if (type.getObject().equals(JTMS.BELIEF))
-                    list.add(n);
-            }
-        }
-        return list;
+        return new StatementSource(reasonerDb);
     }
 }
@@ -0,0 +1,84 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+/**
+ * Index of the statements that refer to each resource as their object. Built
+ * once from a model, and then kept up to date by listening to it, so finding
+ * every reference to a resource costs as much as there are references.
+ *
+ */
+class ReferenceIndex extends StatementListener
+{
+    private final Map<Resource, Set<Statement>> incoming = new HashMap<Resource, Set<Statement>>();
+
+    /**
+     * Drop the index and read every statement of m.
+     *
+     * @param m
+     *            model to index
+     */
+    public void build(Model m)
+    {
+        incoming.clear();
+        StmtIterator it = m.listStatements();
+        while (it.hasNext()) {
+            addedStatement(it.next());
+        }
+    }
+
+    @Override
+    public void addedStatement(Statement s)
+    {
+        RDFNode o = s.getObject();
+        if (!o.isResource()) {
+            return;
+        }
+        Set<Statement> refs = incoming.get(o.asResource());
+        if (refs == null) {
+            refs = new LinkedHashSet<Statement>();
+            incoming.put(o.asResource(), refs);
+        }
+        refs.add(s);
+    }
+
+    @Override
+    public void removedStatement(Statement s)
+    {
+        RDFNode o = s.getObject();
+        if (!o.isResource()) {
+            return;
+        }
+        Set<Statement> refs = incoming.get(o.asResource());
+        if (refs != null) {
+            refs.remove(s);
+            if (refs.isEmpty()) {
+                incoming.remove(o.asResource());
+            }
+        }
+    }
+
+    /**
+     * @return statements that have r as their object
+     */
+    public List<Statement> getReferences(Resource r)
+    {
+        Set<Statement> refs = incoming.get(r);
+        if (refs == null) {
+            return new ArrayList<Statement>();
+        }
+        return new ArrayList<Statement>(refs);
+    }
+}
@@ -0,0 +1,153 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.OWL;
+
+/**
+ * The classes of resources that are the same as each other, through chains
+ * of owl:sameAs links in either direction. Built once from a set of models,
+ * and then kept up to date by listening to them: every resource points at
+ * its class, and linking two classes moves the members of the smaller one
+ * into the larger, so finding the aliases or the canonical IRI of a resource
+ * is a single lookup.
+ *
+ * Unlinking can not be applied to the classes, so removing a link has the
+ * index built again on the next lookup.
+ *
+ */
+class SameAsIndex extends ModelIndex
+{
+    /**
+     * Resources that are the same as each other.
+     */
+    private static class Aliases
+    {
+        private final Set<Resource> members = new LinkedHashSet<Resource>();
+
+        /**
+         * The member with the smallest IRI, or a blank node if there is no
+         * member with an IRI.
+         */
+        private Resource canonical;
+    }
+
+    private final Map<Resource, Aliases> classes = new HashMap<Resource, Aliases>();
+
+    /**
+     * @param sources
+     *            supplying the models whose links are followed. A source may
+     *            supply a new model, in which case the index is built again.
+     */
+    public SameAsIndex(List<Supplier<Model>> sources) {
+        super(sources);
+    }
+
+    /**
+     * @return r, and every resource that is the same as r
+     */
+    public synchronized List<Resource> getAliases(Resource r)
+    {
+        check();
+        Aliases a = classes.get(r);
+        List<Resource> l = new ArrayList<Resource>();
+        if (a == null) {
+            l.add(r);
+        } else {
+            l.addAll(a.members);
+        }
+        return l;
+    }
+
+    /**
+     * @return the same resource for every resource of a class: the one with
+     *         the smallest IRI
+     */
+    public synchronized Resource getCanonical(Resource r)
+    {
+        check();
+        Aliases a = classes.get(r);
+        return a == null ? r : a.canonical;
+    }
+
+    @Override
+    public synchronized void addedStatement(Statement s)
+    {
+        if (s.getPredicate().equals(OWL.sameAs) && s.getObject().isResource()) {
+            union(s.getSubject(), s.getObject().asResource());
+        }
+    }
+
+    @Override
+    public synchronized void removedStatement(Statement s)
+    {
+        if (s.getPredicate().equals(OWL.sameAs)) {
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        classes.clear();
+    }
+
+    @Override
+    protected StmtIterator statements(Model m)
+    {
+        return m.listStatements(null, OWL.sameAs, (RDFNode) null);
+    }
+
+    private void union(Resource x, Resource y)
+    {
+        Aliases a = find(x);
+        Aliases b = find(y);
+        if (a == b) {
+            return;
+        }
+        if (a.members.size() < b.members.size()) {
+            Aliases t = a;
+            a = b;
+            b = t;
+        }
+        for (Resource r : b.members) {
+            a.members.add(r);
+            classes.put(r, a);
+        }
+        a.canonical = smaller(a.canonical, b.canonical);
+    }
+
+    private Aliases find(Resource r)
+    {
+        Aliases a = classes.get(r);
+        if (a == null) {
+            a = new Aliases();
+            a.members.add(r);
+            a.canonical = r;
+            classes.put(r, a);
+        }
+        return a;
+    }
+
+    private static Resource smaller(Resource a, Resource b)
+    {
+        if (!a.isURIResource()) {
+            return b;
+        }
+        if (!b.isURIResource()) {
+            return a;
+        }
+        return a.getURI().compareTo(b.getURI()) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,241 @@
+package knowledgebase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.out.NodeFmtLib;
+
+/**
+ * A binary image of the reasoner's state: its statements, the order beliefs
+ * and justifications were interned in, and the labels of the beliefs. The
+ * image belongs to the knowledge base it was derived from, which is recorded
+ * as a fingerprint, so it is only used while the knowledge base is unchanged.
+ * A knowledge base with blank nodes has no stable fingerprint, and is never
+ * snapshot.
+ *
+ * Statements are stored as RDF Thrift, the rest as plain data.
+ *
+ */
+class Snapshot
+{
+    private static final int MAGIC = 0x53445353;
+    private static final int VERSION = 2;
+
+    private final long fingerprint;
+    private final Model statements;
+    private final List<String> beliefs;
+    private final List<String> justifications;
+    private final BitSet labels;
+
+    /**
+     * @param fingerprint
+     *            of the knowledge base the state was derived from
+     * @param statements
+     *            of the reasoner
+     * @param beliefs
+     *            IRIs of the beliefs, by id
+     * @param justifications
+     *            IRIs of the justifications, by id
+     * @param labels
+     *            of the beliefs, by id
+     */
+    public Snapshot(long fingerprint, Model statements, List<String> beliefs,
+            List<String> justifications, BitSet labels) {
+        this.fingerprint = fingerprint;
+        this.statements = statements;
+        this.beliefs = beliefs;
+        this.justifications = justifications;
+        this.labels = labels;
+    }
+
+    public long getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    public Model getStatements()
+    {
+        return statements;
+    }
+
+    public List<String> getBeliefs()
+    {
+        return beliefs;
+    }
+
+    public List<String> getJustifications()
+    {
+        return justifications;
+    }
+
+    public BitSet getLabels()
+    {
+        return labels;
+    }
+
+    /**
+     * A hash of m: the first 64 bits of the SHA-256 of its statements as
+     * N-Triples lines, in sorted order, so it does not depend on the order
+     * the statements are listed in. The db hands out new labels to blank
+     * nodes every time a graph is read, so the fingerprint of a model with
+     * blank nodes does not tell whether it changed; see hasBlankNodes.
+     *
+     * @param m
+     *            to hash
+     * @return the fingerprint
+     */
+    public static long fingerprint(Model m)
+    {
+        List<String> lines = new ArrayList<String>((int) m.size());
+        StmtIterator it = m.listStatements();
+        while (it.hasNext()) {
+            lines.add(NodeFmtLib.str(it.next().asTriple()));
+        }
+        Collections.sort(lines);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256.
+            throw new IllegalStateException(e);
+        }
+        for (String line : lines) {
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * @return whether some statement of m has a blank node, in which case m
+     *         can not be fingerprinted
+     */
+    public static boolean hasBlankNodes(Model m)
+    {
+        StmtIterator it = m.listStatements();
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next().asTriple();
+                if (t.getSubject().isBlank() || t.getObject().isBlank()) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * Write the snapshot to a temporary file, and move it over f.
+     *
+     * @param f
+     *            file to write
+     * @throws IOException
+     *             if it can not be written
+     */
+    public void write(File f) throws IOException
+    {
+        File tmp = new File(f.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            RDFDataMgr.write(bytes, statements, Lang.RDFTHRIFT);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+
+            writeStrings(out, beliefs);
+            writeStrings(out, justifications);
+            long[] words = labels.toLongArray();
+            out.writeInt(words.length);
+            for (long w : words) {
+                out.writeLong(w);
+            }
+        }
+        Files.move(tmp.toPath(), f.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param f
+     *            file to read
+     * @return the snapshot in f
+     * @throws IOException
+     *             if it can not be read, or is not a snapshot of this version
+     */
+    public static Snapshot read(File f) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(f + " is not a snapshot of this version");
+            }
+            long fingerprint = in.readLong();
+
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            Model statements = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(statements, new ByteArrayInputStream(bytes),
+                    Lang.RDFTHRIFT);
+
+            List<String> beliefs = readStrings(in);
+            List<String> justifications = readStrings(in);
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new Snapshot(fingerprint, statements, beliefs,
+                    justifications, BitSet.valueOf(words));
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> l)
+            throws IOException
+    {
+        out.writeInt(l.size());
+        for (String s : l) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in)
+            throws IOException
+    {
+        int n = in.readInt();
+        List<String> l = new ArrayList<String>(n);
+        for (int i = 0; i < n; i++) {
+            l.add(in.readUTF());
+        }
+        return l;
+    }
+}
@@ -0,0 +1,311 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * A lazy, filtered view of the statements of one or more models. Nothing is
+ * read until the statements are iterated, and a page only reads as many
+ * statements as it skips and returns. Subject, predicate and object filters
+ * use the indexes of the models; the prefix, text and time window filters are
+ * checked per statement.
+ *
+ * Sources are immutable, every filter returns a new source.
+ *
+ */
+public class StatementSource implements Iterable<Statement>
+{
+    private final List<Supplier<Model>> models;
+
+    /**
+     * Model the statements are returned as statements of, or null to return
+     * them as statements of the model they were found in.
+     */
+    private final Model owner;
+
+    /**
+     * Index of the words of the statements of the models, or null to search
+     * by reading every statement.
+     */
+    private final TextIndex text;
+
+    private Resource subject;
+    private Property predicate;
+    private RDFNode object;
+    private String prefix;
+
+    /**
+     * Words every statement must have a word starting with, or null.
+     */
+    private String query;
+
+    /**
+     * Index of the time stamps of events, or null to read the time stamp of
+     * the subject of every statement from the model it was found in.
+     */
+    private TimeIndex times;
+
+    /**
+     * Window of mission elapsed time, in seconds, the subjects of the
+     * statements must be stamped within.
+     */
+    private long from = 0;
+    private long to = Long.MAX_VALUE;
+
+    /**
+     * @param models
+     *            whose statements are listed, in order
+     */
+    public StatementSource(Model... models) {
+        this(suppliers(models), null, null);
+    }
+
+    /**
+     * @param models
+     *            supplying the statements, in order. A model is only asked for
+     *            once iteration reaches it.
+     */
+    StatementSource(List<Supplier<Model>> models) {
+        this(models, null, null);
+    }
+
+    /**
+     * @param models
+     *            supplying the statements, in order
+     * @param text
+     *            index of the words of the statements of every model
+     */
+    StatementSource(List<Supplier<Model>> models, TextIndex text) {
+        this(models, null, text);
+    }
+
+    /**
+     * @param model
+     *            holding the statements
+     * @param owner
+     *            to return the statements as statements of, so their
+     *            resources are looked up in owner rather than in model
+     */
+    StatementSource(Model model, Model owner) {
+        this(suppliers(model), owner, null);
+    }
+
+    private StatementSource(List<Supplier<Model>> models, Model owner,
+            TextIndex text) {
+        this.models = models;
+        this.owner = owner;
+        this.text = text;
+    }
+
+    private StatementSource(StatementSource s) {
+        this(s.models, s.owner, s.text);
+        subject = s.subject;
+        predicate = s.predicate;
+        object = s.object;
+        prefix = s.prefix;
+        query = s.query;
+        times = s.times;
+        from = s.from;
+        to = s.to;
+    }
+
+    /**
+     * @return a source of the statements with subject s
+     */
+    public StatementSource withSubject(Resource s)
+    {
+        StatementSource c = new StatementSource(this);
+        c.subject = s;
+        return c;
+    }
+
+    /**
+     * @return a source of the statements with predicate p
+     */
+    public StatementSource withPredicate(Property p)
+    {
+        StatementSource c = new StatementSource(this);
+        c.predicate = p;
+        return c;
+    }
+
+    /**
+     * @return a source of the statements with object o
+     */
+    public StatementSource withObject(RDFNode o)
+    {
+        StatementSource c = new StatementSource(this);
+        c.object = o;
+        return c;
+    }
+
+    /**
+     * @return a source of the statements whose subject IRI starts with prefix
+     */
+    public StatementSource withPrefix(String prefix)
+    {
+        StatementSource c = new StatementSource(this);
+        c.prefix = prefix;
+        return c;
+    }
+
+    /**
+     * @param words
+     *            to search for, as typed by the user
+     * @return a source of the statements having, for every word, a word of
+     *         the local name of their subject or predicate, or of their
+     *         literal object, starting with it. Without any words, this
+     *         source.
+     */
+    public StatementSource withText(String words)
+    {
+        StatementSource c = new StatementSource(this);
+        c.query = TextIndex.words(words).isEmpty() ? null : words;
+        return c;
+    }
+
+    /**
+     * Statements about something without a time stamp, such as a belief or an
+     * actor, are kept; statements about events stamped outside the window are
+     * left out.
+     * 
+     * @param from
+     *            first second of mission elapsed time
+     * @param to
+     *            last second of mission elapsed time
+     * @return a source of the statements whose subject is not an event stamped
+     *         outside the window
+     */
+    public StatementSource withTimeWindow(long from, long to)
+    {
+        StatementSource c = new StatementSource(this);
+        c.from = from;
+        c.to = to;
+        return c;
+    }
+
+    /**
+     * @return this source, looking up time stamps in times
+     */
+    StatementSource withTimes(TimeIndex times)
+    {
+        StatementSource c = new StatementSource(this);
+        c.times = times;
+        return c;
+    }
+
+    /**
+     * @param offset
+     *            number of matching statements to skip
+     * @param limit
+     *            largest number of statements to return
+     * @return the matching statements from offset on
+     */
+    public List<Statement> page(int offset, int limit)
+    {
+        List<Statement> page = new ArrayList<Statement>();
+        Iterator<Statement> it = iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) {
+            it.next();
+        }
+        while (page.size() < limit && it.hasNext()) {
+            page.add(it.next());
+        }
+        return page;
+    }
+
+    public boolean isEmpty()
+    {
+        return !iterator().hasNext();
+    }
+
+    @Override
+    public Iterator<Statement> iterator()
+    {
+        return new Iterator<Statement>() {
+            private int model = 0;
+            private Iterator<Statement> current;
+            private Statement next;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (next == null) {
+                    if (current != null && current.hasNext()) {
+                        Statement s = current.next();
+                        if (matches(s)) {
+                            next = s;
+                        }
+                        continue;
+                    }
+                    if (model == models.size()) {
+                        return false;
+                    }
+                    if (query != null && text != null) {
+                        // The index covers every model at once.
+                        current = text.candidates(query);
+                        model = models.size();
+                    } else {
+                        current = models.get(model++).get().listStatements(
+                                subject, predicate, object);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Statement next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Statement s = next;
+                next = null;
+                return owner == null ? s : owner.asStatement(s.asTriple());
+            }
+        };
+    }
+
+    private boolean matches(Statement s)
+    {
+        if (subject != null && !subject.equals(s.getSubject())
+                || predicate != null && !predicate.equals(s.getPredicate())
+                || object != null && !object.equals(s.getObject())) {
+            return false;
+        }
+        if (query != null && !TextIndex.matches(s, query)) {
+            return false;
+        }
+        if (from > 0 || to < Long.MAX_VALUE) {
+            long t = times == null ? MissionTime.of(s.getSubject()) : times
+                    .getTime(s.getSubject());
+            if (t >= 0 && (t < from || t > to)) {
+                return false;
+            }
+        }
+        if (prefix == null) {
+            return true;
+        }
+        return s.getSubject().isURIResource()
+                && s.getSubject().getURI().startsWith(prefix);
+    }
+
+    private static List<Supplier<Model>> suppliers(Model... models)
+    {
+        List<Supplier<Model>> l = new ArrayList<Supplier<Model>>();
+        for (Model m : Arrays.asList(models)) {
+            l.add(() -> m);
+        }
+        return l;
+    }
+}
@@ -0,0 +1,49 @@
+package knowledgebase;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.core.Transactional;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Where the graphs of the knowledge base and the reasoner are kept. Reading a
+ * graph returns a copy in memory, which is changed locally and written back
+ * either whole or as an update.
+ *
+ * Every call runs in a transaction of its own, unless one was begun by the
+ * caller on the same thread.
+ *
+ */
+public interface Storage extends Transactional
+{
+    /**
+     * @param graph
+     *            name of the graph
+     * @return a copy of the graph
+     */
+    Model getModel(String graph);
+
+    /**
+     * @param graph
+     *            name of the graph
+     * @return whether the graph exists
+     */
+    boolean containsModel(String graph);
+
+    /**
+     * Replace the graph with m.
+     * 
+     * @param graph
+     *            name of the graph
+     * @param m
+     *            new content of the graph
+     */
+    void putModel(String graph, Model m);
+
+    /**
+     * Apply an update, whose changes name the graphs they apply to.
+     * 
+     * @param request
+     *            to apply
+     */
+    void update(UpdateRequest request);
+}
@@ -0,0 +1,205 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * Inverted index from the words of statements to the statements. The words
+ * of a statement are those of the local names of its subject and predicate
+ * IRIs and of its literal object, in lower case. The scheme and host of an
+ * IRI are left out, as nearly every statement shares them. A search finds the
+ * statements having, for every word of the query, a word that starts with it,
+ * so a query can be run again on every key the user types.
+ *
+ * Built on the first search from a set of models, and then kept up to date by
+ * listening to them. Removing statements in bulk, or a source supplying a new
+ * model, has the index built again on the next search.
+ *
+ */
+class TextIndex extends ModelIndex
+{
+    private final TreeMap<String, Set<Statement>> statements = new TreeMap<String, Set<Statement>>();
+
+    /**
+     * @param sources
+     *            supplying the models to index. A source may supply a new
+     *            model, in which case the index is built again.
+     */
+    public TextIndex(List<Supplier<Model>> sources) {
+        super(sources);
+    }
+
+    /**
+     * Find the statements that may match query: those having a word that
+     * starts with its longest word, which is likely the rarest. Use matches
+     * to tell which of them do. The candidates are read from the index as
+     * they are iterated, so only as many are read as are used; the models
+     * must not change meanwhile.
+     *
+     * @param query
+     *            words to search for, at least one
+     * @return the candidates, each once
+     */
+    public synchronized Iterator<Statement> candidates(String query)
+    {
+        check();
+        String longest = "";
+        for (String w : words(query)) {
+            if (w.length() > longest.length()) {
+                longest = w;
+            }
+        }
+        Iterator<Set<Statement>> sets = startingWith(longest).values()
+                .iterator();
+
+        return new Iterator<Statement>() {
+            // A statement is indexed under every word it has, and more than
+            // one of them may start with the query word.
+            private final Set<Statement> seen = new HashSet<Statement>();
+            private Iterator<Statement> current = Collections.emptyIterator();
+            private Statement next;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (next == null) {
+                    if (current.hasNext()) {
+                        Statement s = current.next();
+                        if (seen.add(s)) {
+                            next = s;
+                        }
+                        continue;
+                    }
+                    if (!sets.hasNext()) {
+                        return false;
+                    }
+                    current = sets.next().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Statement next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Statement s = next;
+                next = null;
+                return s;
+            }
+        };
+    }
+
+    /**
+     * @return whether s has, for every word of query, a word that starts with
+     *         it
+     */
+    public static boolean matches(Statement s, String query)
+    {
+        Set<String> own = words(s);
+        for (String w : words(query)) {
+            boolean found = false;
+            for (String o : own) {
+                if (o.startsWith(w)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the lower case words of text
+     */
+    public static List<String> words(String text)
+    {
+        List<String> l = new ArrayList<String>();
+        for (String w : text.toLowerCase(Locale.ROOT).split(
+                "[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) {
+                l.add(w);
+            }
+        }
+        return l;
+    }
+
+    @Override
+    public synchronized void addedStatement(Statement s)
+    {
+        for (String w : words(s)) {
+            Set<Statement> set = statements.get(w);
+            if (set == null) {
+                set = new HashSet<Statement>();
+                statements.put(w, set);
+            }
+            set.add(s);
+        }
+    }
+
+    @Override
+    public synchronized void removedStatement(Statement s)
+    {
+        for (String w : words(s)) {
+            Set<Statement> set = statements.get(w);
+            if (set != null) {
+                set.remove(s);
+                if (set.isEmpty()) {
+                    statements.remove(w);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        statements.clear();
+    }
+
+    private SortedMap<String, Set<Statement>> startingWith(String prefix)
+    {
+        return statements.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static Set<String> words(Statement s)
+    {
+        Set<String> words = new HashSet<String>();
+        if (s.getSubject().isURIResource()) {
+            words.addAll(words(localName(s.getSubject().getURI())));
+        }
+        words.addAll(words(localName(s.getPredicate().getURI())));
+        RDFNode o = s.getObject();
+        if (o.isLiteral()) {
+            words.addAll(words(o.asLiteral().getLexicalForm()));
+        }
+        return words;
+    }
+
+    /**
+     * @return the part of iri after its last '#', '/' or ':'
+     */
+    private static String localName(String iri)
+    {
+        int i = Math.max(iri.lastIndexOf('#'),
+                Math.max(iri.lastIndexOf('/'), iri.lastIndexOf(':')));
+        return iri.substring(i + 1);
+    }
+}
@@ -0,0 +1,133 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+import vocabs.SEM;
+
+/**
+ * Events by mission elapsed time, from their sem:hasTimeStamp. The events are
+ * kept sorted by time, so finding the events of a window costs as much as
+ * there are events in it.
+ *
+ * Built on the first lookup from a set of models, and then kept up to date by
+ * listening to them. Removing statements in bulk, or a source supplying a new
+ * model, has the index built again on the next lookup.
+ *
+ */
+class TimeIndex extends ModelIndex
+{
+    private final TreeMap<Long, Set<Resource>> events = new TreeMap<Long, Set<Resource>>();
+    private final Map<Resource, Long> times = new HashMap<Resource, Long>();
+
+    /**
+     * @param sources
+     *            supplying the models whose events are indexed. A source may
+     *            supply a new model, in which case the index is built again.
+     */
+    public TimeIndex(List<Supplier<Model>> sources) {
+        super(sources);
+    }
+
+    /**
+     * @param from
+     *            first second of the window
+     * @param to
+     *            last second of the window
+     * @return the events time stamped within the window, earliest first
+     */
+    public synchronized List<Resource> getEvents(long from, long to)
+    {
+        check();
+        List<Resource> l = new ArrayList<Resource>();
+        if (from > to) {
+            return l;
+        }
+        for (Set<Resource> s : events.subMap(from, true, to, true).values()) {
+            l.addAll(s);
+        }
+        return l;
+    }
+
+    /**
+     * @return the time stamp of event in seconds since launch, or -1 if it has
+     *         none
+     */
+    public synchronized long getTime(Resource event)
+    {
+        check();
+        Long t = times.get(event);
+        return t == null ? -1 : t;
+    }
+
+    @Override
+    public synchronized void addedStatement(Statement s)
+    {
+        if (!s.getPredicate().equals(SEM.HAS_TIME_STAMP)) {
+            return;
+        }
+        long t = MissionTime.of(s.getObject());
+        if (t < 0) {
+            return;
+        }
+        // An event has one time; a new stamp replaces the one it had.
+        unstamp(s.getSubject());
+        Set<Resource> set = events.get(t);
+        if (set == null) {
+            set = new LinkedHashSet<Resource>();
+            events.put(t, set);
+        }
+        set.add(s.getSubject());
+        times.put(s.getSubject(), t);
+    }
+
+    @Override
+    public synchronized void removedStatement(Statement s)
+    {
+        if (!s.getPredicate().equals(SEM.HAS_TIME_STAMP)) {
+            return;
+        }
+        Long t = times.get(s.getSubject());
+        if (t != null && t == MissionTime.of(s.getObject())) {
+            unstamp(s.getSubject());
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        events.clear();
+        times.clear();
+    }
+
+    @Override
+    protected StmtIterator statements(Model m)
+    {
+        return m.listStatements(null, SEM.HAS_TIME_STAMP, (RDFNode) null);
+    }
+
+    private void unstamp(Resource event)
+    {
+        Long t = times.remove(event);
+        if (t == null) {
+            return;
+        }
+        Set<Resource> set = events.get(t);
+        set.remove(event);
+        if (set.isEmpty()) {
+            events.remove(t);
+        }
+    }
+}
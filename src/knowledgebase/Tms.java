@@ -1,25 +1,25 @@
 package knowledgebase;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
-import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
-import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
-import org.apache.jena.update.UpdateAction;
-import org.apache.jena.update.UpdateFactory;
-import org.apache.jena.update.UpdateRequest;
-import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 
 import vocabs.JTMS;
@@ -38,6 +38,116 @@ public class Tms
     public static final String NS = "http://apollo.nasa.gov/KB#";
     public static final String Graph = "http://apollo.nasa.gov/KnowledgeBase";
 
+    /**
+     * Number of batches currently open. Changes made while a batch is open are
+     * only stored when the outermost batch is committed.
+     */
+    private int batchDepth = 0;
+
+    /**
+     * Whether the knowledge base changed since the outermost batch began.
+     */
+    private boolean dirty = false;
+
+    /**
+     * Stores the knowledge base in the background, or null if it is stored on
+     * every change.
+     */
+    private WriteBehind writeBehind;
+
+    /**
+     * Local journal of every change, or null if changes are only stored in
+     * the db.
+     */
+    private final Journal journal;
+
+    /**
+     * Changes since the last record of the journal.
+     */
+    private final ChangeLog journalLog = new ChangeLog();
+
+    /**
+     * Whether the journal had records since it was last compacted when the
+     * knowledge base was loaded from it. The db may not have those changes.
+     */
+    private boolean replayed = false;
+
+    /**
+     * Number of journal records after which the journal is compacted into a
+     * snapshot.
+     */
+    private static final int COMPACT_RECORDS = 1000;
+
+    /**
+     * Number of triples added to the knowledge base at once by importFile.
+     */
+    private static final int IMPORT_CHUNK = 10000;
+
+    /**
+     * Statements referring to each resource of the knowledge base.
+     */
+    private final ReferenceIndex references = new ReferenceIndex();
+
+    /**
+     * Statements about the seeAlso targets of each resource of the knowledge
+     * base.
+     */
+    private final AnnotationIndex annotations = new AnnotationIndex(
+            this::getKnowledgeBase);
+
+    /**
+     * Words of the statements of the knowledge base and of the auxiliary
+     * statements.
+     */
+    private final TextIndex words = new TextIndex(statementModels());
+
+    /**
+     * Events of the knowledge base and of the auxiliary statements, by mission
+     * elapsed time.
+     */
+    private final TimeIndex times = new TimeIndex(statementModels());
+
+    /**
+     * Statements about the mission that are not in the knowledge base. Each
+     * file is parsed once, and again only when it changes.
+     */
+    private static final AuxiliaryFile spacelog = new AuxiliaryFile(
+            "src/data/spacelog.ttl");
+    private static final AuxiliaryFile nasa = new AuxiliaryFile(
+            "src/data/nasa.n3");
+
+    /**
+     * SPARQL endpoint of dbpedia.
+     */
+    public static final String DBPEDIA = "http://dbpedia.org/sparql";
+
+    /**
+     * Fetches statements from dbpedia in the background, or null until
+     * enrichment is enabled.
+     */
+    private Enrichment enrichment;
+
+    /**
+     * Runs the work of adding fetched statements to the knowledge base.
+     */
+    private Executor applier;
+
+    /**
+     * Resources that are the same as each other, in the knowledge base or in
+     * the mission data.
+     */
+    private final SameAsIndex sameAs;
+
+    /**
+     * Every query and update of the TMS, parsed once.
+     */
+    private static final QueryRegistry queries = new QueryRegistry();
+
+    static {
+        queries.registerUpdate("insert", "INSERT { ?s ?p ?o } WHERE {}");
+        queries.registerUpdate("delete", "DELETE { ?s ?p ?o } WHERE {}");
+    }
+
     /**
      * @param Initialize
      *            the knowledge base using this Fuseki instance.
@@ -45,7 +155,84 @@ public class Tms
     public Tms(Fuseki db) {
         this.db = db;
         // knowledgeBase = db.ds.getNamedModel(Graph);
-        knowledgeBase = db.accessor.getModel(Graph);
+        knowledgeBase = db.getModel(Graph);
+        journal = null;
+        followIndexes();
+        sameAs = followSameAs();
+    }
+
+    /**
+     * Initialize the knowledge base from a local journal, and record every
+     * later change in it. Only if the journal is empty, or can not be read, is
+     * the knowledge base downloaded from the db.
+     * 
+     * @param db
+     *            to store the knowledge base in
+     * @param journalDir
+     *            directory of the journal
+     */
+    public Tms(Fuseki db, File journalDir) {
+        this.db = db;
+        journal = new Journal(journalDir);
+
+        Model kb = null;
+        if (journal.exists()) {
+            try {
+                kb = journal.load();
+                replayed = journal.getRecords() > 0;
+            } catch (IOException e) {
+                System.out.println("Could not replay the journal: " + e);
+            }
+        }
+        if (kb == null) {
+            kb = db.getModel(Graph);
+            compact(kb);
+        }
+        knowledgeBase = kb;
+        knowledgeBase.register(journalLog);
+        followIndexes();
+        sameAs = followSameAs();
+    }
+
+    /**
+     * @return whether the knowledge base was loaded from the journal, and the
+     *         journal had changes the db may not have
+     */
+    public boolean hasReplayedChanges()
+    {
+        return replayed;
+    }
+
+    private void followIndexes()
+    {
+        references.build(knowledgeBase);
+        knowledgeBase.register(references);
+    }
+
+    private SameAsIndex followSameAs()
+    {
+        List<Supplier<Model>> models = new ArrayList<Supplier<Model>>();
+        models.add(() -> knowledgeBase);
+        models.add(nasa::getModel);
+        models.add(spacelog::getModel);
+        return new SameAsIndex(models);
+    }
+
+    /**
+     * @return r, and every resource linked to it by a chain of owl:sameAs in
+     *         the knowledge base or the mission data
+     */
+    public List<Resource> getAliases(Resource r)
+    {
+        return sameAs.getAliases(r);
+    }
+
+    /**
+     * @return the resource that stands for every alias of r
+     */
+    public Resource getCanonical(Resource r)
+    {
+        return sameAs.getCanonical(r);
     }
 
     /**
@@ -57,12 +244,260 @@ public class Tms
     }
 
     /**
-     * Handler for changes. Currently updates the db.
+     * @return the registry of TMS queries, with their counters
+     */
+    public QueryRegistry getQueries()
+    {
+        return queries;
+    }
+
+    private void insert(String s, Property p, String o)
+    {
+        insert(ResourceFactory.createResource(s), p,
+                ResourceFactory.createResource(o));
+    }
+
+    private void insert(Resource s, Property p, RDFNode o)
+    {
+        queries.update("insert", knowledgeBase, QueryRegistry.with("s", s)
+                .and("p", p).and("o", o));
+    }
+
+    private void delete(String s, Property p, String o)
+    {
+        delete(ResourceFactory.createResource(s), p,
+                ResourceFactory.createResource(o));
+    }
+
+    private void delete(Resource s, Property p, RDFNode o)
+    {
+        queries.update("delete", knowledgeBase, QueryRegistry.with("s", s)
+                .and("p", p).and("o", o));
+    }
+
+    /**
+     * Remove every statement with r as subject or object. Statements referring
+     * to r are found through the reference index, rather than by scanning the
+     * knowledge base. The removals reach the reasoner and the db as a delta.
+     */
+    private void deleteResource(Resource r)
+    {
+        Set<Statement> doomed = new LinkedHashSet<Statement>(knowledgeBase
+                .listStatements(r, null, (RDFNode) null).toList());
+        doomed.addAll(references.getReferences(r));
+        knowledgeBase.remove(new ArrayList<Statement>(doomed));
+    }
+
+    /**
+     * Handler for changes. Currently updates the db, unless a batch is open.
      */
     public void changed()
     {
-        // Only put the model if it contains anything
-        db.accessor.putModel(Graph, knowledgeBase);
+        if (batchDepth > 0) {
+            dirty = true;
+            return;
+        }
+        record();
+        store();
+    }
+
+    /**
+     * Append the changes since the last record to the journal, compacting it
+     * once it has grown long enough.
+     */
+    private void record()
+    {
+        if (journal == null) {
+            return;
+        }
+        boolean bulk;
+        synchronized (journalLog) {
+            // Statements changed in bulk are not in the log, so the whole
+            // knowledge base is written instead.
+            bulk = journalLog.hasBulkChange();
+            if (bulk) {
+                journalLog.clear();
+            } else {
+                try {
+                    journal.append(journalLog);
+                    journalLog.clear();
+                } catch (IOException e) {
+                    System.out.println("Could not append to the journal: "
+                            + e);
+                }
+            }
+        }
+        if (bulk || journal.getRecords() >= COMPACT_RECORDS) {
+            compact(knowledgeBase);
+        }
+    }
+
+    private void compact(Model kb)
+    {
+        try {
+            journal.compact(kb);
+        } catch (IOException e) {
+            System.out.println("Could not compact the journal: " + e);
+        }
+    }
+
+    private void store()
+    {
+        if (writeBehind != null) {
+            writeBehind.changed();
+        } else {
+            db.putModel(Graph, knowledgeBase);
+        }
+    }
+
+    /**
+     * Store the knowledge base from a background thread from now on. Changes
+     * only mark the knowledge base as dirty, and a burst of changes is sent as
+     * a single update once the knowledge base has been quiet for delayMillis.
+     * 
+     * @param delayMillis
+     *            how long to wait for more changes before sending them
+     */
+    public void enableWriteBehind(long delayMillis)
+    {
+        if (writeBehind == null) {
+            writeBehind = new WriteBehind(db, Graph, knowledgeBase,
+                    delayMillis);
+        }
+    }
+
+    /**
+     * Fetch statements from the given dbpedia endpoint, and keep the fetched
+     * statements in cacheFile between runs. Fetched statements are added to
+     * the knowledge base by applier, which should run them on the thread that
+     * changes the knowledge base. Until this is called, nothing is fetched,
+     * as there is no thread to add the fetched statements on.
+     * 
+     * @param endpoint
+     *            SPARQL endpoint of dbpedia, or of a stand-in for it
+     * @param cacheFile
+     *            to keep fetched statements in
+     * @param applier
+     *            to run the adding of fetched statements on
+     */
+    public void enableEnrichment(String endpoint, File cacheFile,
+            Executor applier)
+    {
+        if (applier == null) {
+            throw new IllegalArgumentException("No applier given");
+        }
+        if (enrichment != null) {
+            enrichment.shutdown();
+        }
+        enrichment = new Enrichment(queries, endpoint, cacheFile);
+        this.applier = applier;
+    }
+
+    /**
+     * Send pending changes to the db without waiting for the write-behind
+     * delay. Returns at once.
+     */
+    public void flush()
+    {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    /**
+     * Send pending changes to the db, and wait until they are stored.
+     * 
+     * @return whether every change is stored
+     */
+    public boolean flushAndWait()
+    {
+        return writeBehind == null || writeBehind.flushAndWait();
+    }
+
+    /**
+     * Store pending changes and stop the background persister, so every later
+     * change is stored at once again. The journal is closed, and compacted if
+     * every change is stored; otherwise its records are replayed and stored
+     * on the next start. Fetching from dbpedia is stopped. Meant to be called
+     * on shutdown.
+     * 
+     * @return whether every change is stored in the db
+     */
+    public boolean shutdown()
+    {
+        if (enrichment != null) {
+            enrichment.shutdown();
+            enrichment = null;
+        }
+        boolean stored = true;
+        if (writeBehind != null) {
+            stored = writeBehind.shutdown();
+            writeBehind = null;
+        }
+        if (!stored) {
+            System.out.println("The knowledge base is not stored in the db"
+                    + (journal == null ? "" : ", only in the journal"));
+        }
+        if (journal != null) {
+            knowledgeBase.unregister(journalLog);
+            if (stored) {
+                compact(knowledgeBase);
+            }
+            journal.close();
+        }
+        return stored;
+    }
+
+    /**
+     * Begin a batch of changes. Until the batch is committed, mutators only
+     * change the knowledge base in memory. Batches may be nested, in which
+     * case only the outermost commit stores the knowledge base.
+     */
+    public void begin()
+    {
+        batchDepth++;
+    }
+
+    /**
+     * Commit the innermost batch. If it is the outermost one, and anything
+     * changed during it, the knowledge base is stored once.
+     */
+    public void commit()
+    {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No batch to commit");
+        }
+        batchDepth--;
+        if (batchDepth == 0 && dirty) {
+            dirty = false;
+            record();
+            store();
+        }
+    }
+
+    /**
+     * Run work as a single batch. The batch is committed even if work throws,
+     * since its changes have already been made to the knowledge base.
+     * 
+     * @param work
+     *            calling any number of mutators
+     */
+    public void batch(Runnable work)
+    {
+        begin();
+        try {
+            work.run();
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * @return whether a batch is open
+     */
+    public boolean inBatch()
+    {
+        return batchDepth > 0;
     }
 
     public void addBelief(String resourceIri)
@@ -71,25 +506,14 @@ public class Tms
             System.out.println("Ignoring empty belief IRI");
             return;
         }
-        String insert = String.format("INSERT DATA { <%s> a <%s> }",
-                resourceIri, JTMS.BELIEF);
-
-        UpdateRequest request = UpdateFactory.create();
-        request.add(insert);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(resourceIri, RDF.type, JTMS.BELIEF.getURI());
 
         changed();
     }
 
     public void removeBelief(Belief b)
     {
-        String deleteProps = String.format("DELETE WHERE { <%s> ?p ?o }",
-                b.getResource());
-        String deleteRefs = String.format("DELETE WHERE { ?s ?p <%s> }",
-                b.getResource());
-        UpdateRequest request = UpdateFactory.create();
-        request.add(deleteProps).add(deleteRefs);
-        UpdateAction.execute(request, knowledgeBase);
+        deleteResource(b.getResource());
 
         changed();
     }
@@ -103,13 +527,7 @@ public class Tms
      */
     public void removeJustification(Justification j)
     {
-        String deleteProps = String.format("DELETE WHERE { <%s> ?p ?o }",
-                j.getResource());
-        String deleteRefs = String.format("DELETE WHERE { ?s ?p <%s> }",
-                j.getResource());
-        UpdateRequest request = UpdateFactory.create();
-        request.add(deleteProps).add(deleteRefs);
-        UpdateAction.execute(request, knowledgeBase);
+        deleteResource(j.getResource());
 
         changed();
     }
@@ -121,11 +539,7 @@ public class Tms
      */
     public void addJustification(String resourceIri)
     {
-        String insert = String.format("INSERT DATA { <%s> a <%s> }",
-                resourceIri, JTMS.JUSTIFICATION);
-        UpdateRequest request = UpdateFactory.create();
-        request.add(insert);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(resourceIri, RDF.type, JTMS.JUSTIFICATION.getURI());
 
         changed();
     }
@@ -136,11 +550,7 @@ public class Tms
      */
     public void justifies(String justificationIri, String beliefIri)
     {
-        String insert = String.format("INSERT DATA { <%s> <%s> <%s> }",
-                justificationIri, JTMS.JUSTIFIES, beliefIri);
-        UpdateRequest request = UpdateFactory.create();
-        request.add(insert);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(justificationIri, JTMS.JUSTIFIES, beliefIri);
 
         changed();
     }
@@ -160,17 +570,18 @@ public class Tms
     public void addToIn(String beliefIri, String justificationIri,
             boolean makePremise)
     {
-        String addIn = String.format("INSERT DATA { <%s> <%s> <%s> }",
-                justificationIri, JTMS.HAS_SUPPORT, beliefIri);
-        UpdateRequest request = UpdateFactory.create();
-        request.add(addIn);
-        UpdateAction.execute(request, knowledgeBase);
+        begin();
+        try {
+            insert(justificationIri, JTMS.HAS_SUPPORT, beliefIri);
 
-        if (makePremise) {
-            premise(beliefIri);
-        }
+            if (makePremise) {
+                premise(beliefIri);
+            }
 
-        changed();
+            changed();
+        } finally {
+            commit();
+        }
     }
 
     /**
@@ -183,22 +594,14 @@ public class Tms
      */
     public void removeFromIn(Belief b, Justification j)
     {
-        String removeIn = String.format("DELETE DATA { <%s> <%s> <%s> }",
-                j.getResource(), JTMS.HAS_SUPPORT, b.getResource());
-        UpdateRequest request = UpdateFactory.create();
-        request.add(removeIn);
-        UpdateAction.execute(request, knowledgeBase);
+        delete(j.getResource(), JTMS.HAS_SUPPORT, b.getResource());
 
         changed();
     }
 
     public void addToOut(String beliefIri, String justificationIri)
     {
-        String addOut = String.format("INSERT DATA { <%s> <%s> <%s> }",
-                justificationIri, JTMS.HAS_OPPOSITION, beliefIri);
-        UpdateRequest request = UpdateFactory.create();
-        request.add(addOut);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(justificationIri, JTMS.HAS_OPPOSITION, beliefIri);
 
         changed();
     }
@@ -213,93 +616,150 @@ public class Tms
      */
     public void removeFromOut(Belief b, Justification j)
     {
-        String removeOut = String.format("DELETE DATA { <%s> <%s> <%s> }",
-                j.getResource(), JTMS.HAS_OPPOSITION, b.getResource());
-        UpdateRequest request = UpdateFactory.create();
-        request.add(removeOut);
-        UpdateAction.execute(request, knowledgeBase);
+        delete(j.getResource(), JTMS.HAS_OPPOSITION, b.getResource());
 
         changed();
     }
 
     public void premise(String beliefIri)
     {
-        String query = String.format("INSERT DATA { <%s> a <%s> }", beliefIri,
-                JTMS.PREMISE);
-
-        UpdateRequest request = UpdateFactory.create();
-        request.add(query);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(beliefIri, RDF.type, JTMS.PREMISE.getURI());
 
         changed();
     }
 
     public void unpremise(String beliefIri)
     {
-        String query = String.format("DELETE DATA { <%s> a <%s> }", beliefIri,
-                JTMS.PREMISE);
-
-        UpdateRequest request = UpdateFactory.create();
-        request.add(query);
-        UpdateAction.execute(request, knowledgeBase);
+        delete(beliefIri, RDF.type, JTMS.PREMISE.getURI());
 
         changed();
     }
 
     public void contradict(String beliefIri)
     {
-        String query = String.format("INSERT DATA { <%s> a <%s> }", beliefIri,
-                JTMS.CONTRADICTION);
-
-        UpdateRequest request = UpdateFactory.create();
-        request.add(query);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(beliefIri, RDF.type, JTMS.CONTRADICTION.getURI());
 
         changed();
     }
 
     public void uncontradict(String beliefIri)
     {
-        String query = String.format("DELETE DATA { <%s> a <%s> }", beliefIri,
-                JTMS.CONTRADICTION);
-
-        UpdateRequest request = UpdateFactory.create();
-        request.add(query);
-        UpdateAction.execute(request, knowledgeBase);
+        delete(beliefIri, RDF.type, JTMS.CONTRADICTION.getURI());
 
         changed();
     }
 
+    /**
+     * Stream a Turtle or N-Triples file into the knowledge base. The file is
+     * parsed whole before anything is added, so the import is all or nothing.
+     * Its triples are then added in chunks of IMPORT_CHUNK, as a single batch
+     * and a single bulk change, so the knowledge base is stored whole once at
+     * the end, rather than as an update holding every triple. The reasoner
+     * should be updated once after the import, and then infers everything
+     * again.
+     * 
+     * @param path
+     *            of the file, whose extension tells its syntax
+     * @return number of triples read
+     * @throws RiotException
+     *             if the file can not be read or parsed, in which case
+     *             nothing is imported
+     */
+    public long importFile(String path)
+    {
+        BulkImport sink = new BulkImport(knowledgeBase.getGraph(),
+                IMPORT_CHUNK);
+        RDFDataMgr.parse(sink, path);
+        batch(() -> {
+            sink.commit();
+            changed();
+        });
+        System.out.println("Imported " + sink.getCount() + " triples from "
+                + path);
+        return sink.getCount();
+    }
+
+    /**
+     * @return the statements about everything b links to with rdfs:seeAlso
+     */
     public List<Statement> getStatements(Belief b)
     {
-        List<Statement> list = new ArrayList<Statement>();
-
-        // Find all seeAlso triples for our belief b, then add the properties
-        // of the seeAlso objects to the list of statements.
-        StmtIterator seeAlsoIt = b.getResource().listProperties(RDFS.seeAlso);
-        while (seeAlsoIt.hasNext()) {
-            System.out.println("had seealso");
-            Statement see = seeAlsoIt.next();
-            StmtIterator seeProps = see.getObject().asResource()
-                    .listProperties();
-            while (seeProps.hasNext()) {
-                list.add(seeProps.next());
+        return getAnnotations(b).page(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The annotations of b: the statements about everything b links to with
+     * rdfs:seeAlso. They are kept up to date as the knowledge base changes, so
+     * reading them costs as much as there are annotations of b.
+     * 
+     * @return a lazy source of the annotations of b
+     */
+    public StatementSource getAnnotations(Belief b)
+    {
+        return new StatementSource(annotations.get(b.getResource()),
+                knowledgeBase).withTimes(times);
+    }
+
+    /**
+     * The statements of the knowledge base, followed by the auxiliary
+     * statements. Statements are read as they are iterated, and the auxiliary
+     * statements are only loaded once iteration reaches them. Searching the
+     * source by text uses an index of the words of every statement, which is
+     * built on the first search.
+     * 
+     * @return a lazy source of every statement the user can choose from
+     */
+    public StatementSource getStatementSource()
+    {
+        return new StatementSource(statementModels(), words).withTimes(times);
+    }
+
+    /**
+     * @param from
+     *            first second of mission elapsed time
+     * @param to
+     *            last second of mission elapsed time
+     * @return the events of the knowledge base and of the auxiliary statements
+     *         stamped within the window, earliest first
+     */
+    public List<Resource> getEvents(long from, long to)
+    {
+        return times.getEvents(from, to);
+    }
+
+    /**
+     * Everything that happened within a window, such as between 55:50 and
+     * 56:10 (see MissionTime.parse).
+     * 
+     * @param from
+     *            first second of mission elapsed time
+     * @param to
+     *            last second of mission elapsed time
+     * @return the statements about the events stamped within the window, from
+     *         the knowledge base and the auxiliary statements, earliest event
+     *         first
+     */
+    public List<Statement> getTimeline(long from, long to)
+    {
+        Set<Statement> timeline = new LinkedHashSet<Statement>();
+        for (Resource event : times.getEvents(from, to)) {
+            for (Supplier<Model> m : statementModels()) {
+                timeline.addAll(m.get().listStatements(event, null,
+                        (RDFNode) null).toList());
             }
         }
-        return list;
+        return new ArrayList<Statement>(timeline);
     }
 
     /**
-     * @return all statements in the KB
+     * @return the knowledge base, then the auxiliary statements
      */
-    public List<Statement> getStatements()
+    private List<Supplier<Model>> statementModels()
     {
-        List<Statement> list = new ArrayList<Statement>();
-        StmtIterator iter = knowledgeBase.listStatements();
-        while (iter.hasNext()) {
-            list.add(iter.nextStatement());
-        }
-        return list;
+        List<Supplier<Model>> models = new ArrayList<Supplier<Model>>();
+        models.add(() -> knowledgeBase);
+        models.add(spacelog::getModel);
+        return models;
     }
 
     /**
@@ -310,57 +770,22 @@ public class Tms
      */
     public List<Statement> getAuxiliaryStatements()
     {
-        List<Statement> list = new ArrayList<Statement>();
-
-        String all = String.format("SELECT ?s ?p ?o"
-                + " FROM <src/data/spacelog.ttl>" + " WHERE { ?s ?p ?o . } ");
-        Query query = QueryFactory.create(all);
-        QueryExecution qexec = QueryExecutionFactory.create(query);
-        ResultSet rSet = qexec.execSelect();
-        while (rSet.hasNext()) {
-            QuerySolution soln = rSet.next();
-            Resource subj = soln.get("s").asResource();
-            Property pred = ResourceFactory.createProperty(soln.get("p")
-                    .toString());
-            RDFNode obj = soln.get("o");
-            list.add(ResourceFactory.createStatement(subj, pred, obj));
-        }
-        qexec.close();
-
-        return list;
+        return spacelog.getModel().listStatements().toList();
     }
 
     public void addStatement(Belief b, List<String> triple)
     {
         // Insert the statement, as well as a link to that statement.
         System.out.println("Adding to KB:" + triple.toString());
-        String addStatement = String.format("INSERT DATA { <%s> <%s> <%s> }",
-                triple.get(0), triple.get(1), triple.get(0));
-        String linkStatement = String.format("INSERT DATA { <%s> <%s> <%s> }",
-                b.getResource(), RDFS.seeAlso, triple.get(0));
-        UpdateRequest request = UpdateFactory.create();
-        request.add(addStatement).add(linkStatement);
-        UpdateAction.execute(request, knowledgeBase);
+        insert(triple.get(0), ResourceFactory.createProperty(triple.get(1)),
+                triple.get(0));
+        insert(b.getResource(), RDFS.seeAlso,
+                ResourceFactory.createResource(triple.get(0)));
 
         // Insert all other statements relating to the subject of the inserted
         // statement.
-        System.out.println("making req");
-        String addAllStatements = String.format("SELECT ?p ?o"
-                + " FROM <src/data/spacelog.ttl> WHERE { <%s> ?p ?o }",
-                triple.get(0));
-        Query query = QueryFactory.create(addAllStatements);
-        QueryExecution qexec = QueryExecutionFactory.create(query);
-        ResultSet rSet = qexec.execSelect();
-
-        for (; rSet.hasNext();) {
-            QuerySolution soln = rSet.next();
-            Resource res = ResourceFactory.createResource(triple.get(0));
-            Property pred = ResourceFactory.createProperty(soln.get("p")
-                    .toString());
-            RDFNode obj = soln.get("o");
-            knowledgeBase.add(ResourceFactory.createStatement(res, pred, obj));
-        }
-        qexec.close();
+        Resource res = ResourceFactory.createResource(triple.get(0));
+        knowledgeBase.add(spacelog.listStatements(res, null));
 
         // If provenance is provided and it was used to make an attribution,
         // we will fetch relevant triples for this resource using dbpedia.
@@ -379,45 +804,31 @@ public class Tms
     /**
      * Attempt to populate the knowledge base with information about the given
      * resource from dbpedia. In our case, we'll do a federated query based on
-     * 1) the given resource, 2) the nasa mission data, 3) dbpedia.
+     * 1) the given resource, 2) its aliases in the knowledge base and the nasa
+     * mission data, 3) dbpedia. The query runs in the background, or not at
+     * all if its result is cached, and this returns at once. Nothing is
+     * fetched unless enrichment is enabled.
      * 
      * @param resource
      *            to fetch information about from dbpedia
      */
     public void fetchFromDbpedia(String resource)
     {
-
-        System.out.println("fetchFromDbpedia will try " + resource + "...");
-
-        // Use the nasa mission triples to fetch data from dbpedia via a
-        // federated query. Note we're using all the data sets we have, which
-        // are lifted spacelog and nasa mission triples.
-        // Results are filtered to English only.
-        String nasaSameAs = String.format(
-                "SELECT ?s ?p ?o FROM <src/data/nasa.n3> FROM <src/data/spacelog.ttl>"
-                        + " WHERE { <%s> (<%s>|^<%s>)* ?s . "
-                        + " SERVICE <http://dbpedia.org/sparql> { ?s ?p ?o } "
-                        + " FILTER(langMatches(lang(?o), \"EN\"))" + " }"
-                        + " LIMIT 300", resource, OWL.sameAs, OWL.sameAs);
-        Query query = QueryFactory.create(nasaSameAs);
-        QueryExecution qexec = QueryExecutionFactory.create(query);
-        ResultSet rSet = qexec.execSelect();
-        while (rSet.hasNext()) {
-            QuerySolution soln = rSet.next();
-            Resource res = soln.get("s").asResource();
-            Property pred = ResourceFactory.createProperty(soln.get("p")
-                    .toString());
-            RDFNode o = soln.get("o");
-
-            // Create the dbpedia resource in KB.
-            knowledgeBase
-                    .add(ResourceFactory.createResource(resource), pred, o);
-
-            // Internalize linking in knowledgeBase
-            knowledgeBase.add(res, OWL.sameAs, resource);
+        if (enrichment == null) {
+            return;
         }
-        qexec.close();
-
-        changed();
+        List<Resource> aliases = getAliases(ResourceFactory
+                .createResource(resource));
+        enrichment.fetch(resource, aliases).whenComplete((statements, error) -> {
+            if (error != null) {
+                System.out.println("Could not fetch " + resource
+                        + " from dbpedia: " + error);
+                return;
+            }
+            applier.execute(() -> {
+                knowledgeBase.add(statements);
+                changed();
+            });
+        });
     }
 }
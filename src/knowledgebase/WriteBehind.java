@@ -0,0 +1,196 @@
+package knowledgebase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Stores a model in the db from a background thread. Changes are collected in
+ * a change log, and a burst of changes is sent as a single update once the
+ * model has been quiet for a short delay. The calling thread never waits for
+ * the db. Whatever could not be stored is kept, and sent again before the next
+ * changes.
+ *
+ */
+class WriteBehind
+{
+    private final Fuseki db;
+    private final String graph;
+    private final Model model;
+    private final long delayMillis;
+
+    /**
+     * Changes not sent yet. Filled from the thread changing the model, and
+     * drained by the persister, both while holding the log.
+     */
+    private final ChangeLog log = new ChangeLog();
+
+    private final ScheduledExecutorService executor = Executors
+            .newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Copy of the whole model to put, for changes that can not be sent as an
+     * update.
+     */
+    private Model snapshot;
+
+    /**
+     * Updates that could not be stored, to send after the snapshot and before
+     * the log, oldest first.
+     */
+    private final List<UpdateRequest> unsent = new ArrayList<UpdateRequest>();
+    private boolean scheduled = false;
+
+    /**
+     * @param db
+     *            to store the model in
+     * @param graph
+     *            name of the graph to store the model as
+     * @param model
+     *            to follow
+     * @param delayMillis
+     *            how long the model must be quiet before changes are sent
+     */
+    public WriteBehind(Fuseki db, String graph, Model model, long delayMillis) {
+        this.db = db;
+        this.graph = graph;
+        this.model = model;
+        this.delayMillis = delayMillis;
+        model.register(log);
+    }
+
+    /**
+     * Mark the model as changed, and schedule the changes to be sent. Returns
+     * at once.
+     */
+    public synchronized void changed()
+    {
+        synchronized (log) {
+            // Blank nodes can not be deleted through DELETE DATA, and
+            // statements removed or read in bulk are not in the log, so put
+            // the whole model instead. It holds every change not sent yet.
+            if (log.hasBlankNodes() || log.hasBulkChange()) {
+                snapshot = ModelFactory.createDefaultModel().add(model);
+                unsent.clear();
+                log.clear();
+            }
+        }
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::send, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send pending changes without waiting for the delay.
+     *
+     * @return completes once the changes are sent, with whether they were
+     *         stored
+     */
+    public Future<Boolean> flush()
+    {
+        return executor.submit(this::send);
+    }
+
+    /**
+     * Send pending changes, and wait until they are stored.
+     * 
+     * @return whether every change is stored
+     */
+    public boolean flushAndWait()
+    {
+        try {
+            return flush().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Could not store " + graph + ": "
+                    + e.getCause());
+        }
+        return false;
+    }
+
+    /**
+     * Store pending changes and stop the persister. Changes made after this
+     * are no longer followed.
+     * 
+     * @return whether every change is stored. If not, what was not stored is
+     *         reported.
+     */
+    public boolean shutdown()
+    {
+        boolean stored = flushAndWait();
+        model.unregister(log);
+        executor.shutdown();
+        if (!stored) {
+            synchronized (this) {
+                System.out.println("Changes to " + graph + " were not stored: "
+                        + (snapshot == null ? "" : "the whole graph, then ")
+                        + unsent.size() + " updates");
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Send the snapshot, the updates that could not be stored before, and the
+     * log, in that order. Whatever is not stored is kept to send again.
+     * 
+     * @return whether everything was stored
+     */
+    private boolean send()
+    {
+        Model put;
+        List<UpdateRequest> requests;
+        synchronized (this) {
+            scheduled = false;
+            put = snapshot;
+            snapshot = null;
+            requests = new ArrayList<UpdateRequest>(unsent);
+            unsent.clear();
+            synchronized (log) {
+                // A bulk change is left for changed to turn into a snapshot.
+                if (!log.isEmpty() && !log.hasBulkChange()) {
+                    requests.add(log.toUpdateRequest(graph));
+                    log.clear();
+                }
+            }
+        }
+
+        int sent = 0;
+        try {
+            if (put != null) {
+                db.putModel(graph, put);
+                put = null;
+            }
+            for (UpdateRequest request : requests) {
+                db.update(request);
+                sent++;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            System.out.println("Could not store " + graph + ", will send it"
+                    + " again on the next change or flush: " + e);
+            synchronized (this) {
+                // A newer snapshot holds these changes already.
+                if (snapshot == null) {
+                    snapshot = put;
+                    unsent.addAll(0, requests.subList(sent, requests.size()));
+                }
+            }
+            return false;
+        }
+    }
+}
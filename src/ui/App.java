@@ -8,10 +8,10 @@ import javax.swing.JFrame;
 
 import knowledgebase.Belief;
 import knowledgebase.Justification;
+import knowledgebase.StatementSource;
 import net.miginfocom.swing.MigLayout;
 
 import org.apache.commons.lang3.tuple.Pair;
-import org.apache.jena.rdf.model.Statement;
 
 public class App extends BaseView
 {
@@ -91,7 +91,7 @@ public class App extends BaseView
 
     public void render(Justification j, List<Belief> inList,
             List<Belief> outList, String status,
-            List<Statement> potentialStatements)
+            StatementSource potentialStatements)
     {
         head.render(j);
         details.render(j, inList, outList, status, potentialStatements);
@@ -102,7 +102,7 @@ public class App extends BaseView
     }
 
     public void render(Belief b, String status,
-            List<Statement> beliefStatements, List<Statement> allStatements)
+            StatementSource beliefStatements, StatementSource allStatements)
     {
         head.render(b);
         details.render(b, status, beliefStatements, allStatements);
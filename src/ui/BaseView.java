@@ -17,10 +17,10 @@ import javax.swing.SwingUtilities;
 
 import knowledgebase.Belief;
 import knowledgebase.Justification;
+import knowledgebase.StatementSource;
 import knowledgebase.Tms;
 
 import org.apache.commons.validator.routines.UrlValidator;
-import org.apache.jena.rdf.model.Statement;
 
 public class BaseView implements ViewPublisher
 {
@@ -210,7 +210,7 @@ public class BaseView implements ViewPublisher
      * @return list of triples, or an empty list if one of the triples was
      *         empty/invalid N3
      */
-    protected List<String> promptForTriple(List<Statement> potentialStatements)
+    protected List<String> promptForTriple(StatementSource potentialStatements)
     {
         JFrame owner = (JFrame) SwingUtilities.getAncestorOfClass(JFrame.class,
                 panel);
@@ -241,7 +241,7 @@ public class BaseView implements ViewPublisher
      * @return list of triples, or an empty list if one of the triples was
      *         empty/invalid N3
      */
-    protected String promptForBelief(List<Statement> potentialStatements)
+    protected String promptForBelief(StatementSource potentialStatements)
     {
         JFrame owner = (JFrame) SwingUtilities.getAncestorOfClass(JFrame.class,
                 panel);
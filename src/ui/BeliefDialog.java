@@ -8,7 +8,6 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JDialog;
@@ -20,10 +19,12 @@ import javax.swing.RowFilter;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 
+import knowledgebase.StatementSource;
 import knowledgebase.Tms;
 import net.miginfocom.swing.MigLayout;
 
 import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.RDF;
 
 import vocabs.JTMS;
 
@@ -34,17 +35,22 @@ public class BeliefDialog extends JDialog
 {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Largest number of beliefs offered to choose from.
+     */
+    private static final int PAGE = 500;
+
     JLabel labelSubj = new JLabel("Subject");
 
     JTextField subjField = new JTextField();
 
     public BeliefDialog(Frame owner, boolean modal,
-            List<Statement> potentialStatements) {
+            StatementSource potentialStatements) {
         super(owner, modal);
         init(potentialStatements);
     }
 
-    private void init(List<Statement> potentialStatements)
+    private void init(StatementSource potentialStatements)
     {
         this.setTitle("Select Belief");
         this.setLayout(new MigLayout("ins 20, wrap 2", "[para]20[800lp, fill]"));
@@ -53,7 +59,10 @@ public class BeliefDialog extends JDialog
         subjField.setText(Tms.NS);
         this.add(subjField);
 
-        if (potentialStatements != null && potentialStatements.size() > 0) {
+        StatementSource beliefs = potentialStatements == null ? null
+                : potentialStatements.withPredicate(RDF.type).withObject(
+                        JTMS.BELIEF);
+        if (beliefs != null && !beliefs.isEmpty()) {
 
             this.add(new JLabel("… or choose one from the knowledge base"),
                     "span 2");
@@ -100,9 +109,8 @@ public class BeliefDialog extends JDialog
 
             model.addColumn("Belief URI");
 
-            for (Statement s : potentialStatements) {
-                if (s.getObject().equals(JTMS.BELIEF))
-                    model.addRow(new Object[] { s.getSubject().toString() });
+            for (Statement s : beliefs.page(0, PAGE)) {
+                model.addRow(new Object[] { s.getSubject().toString() });
             }
 
             table.setRowHeight(23);
@@ -16,6 +16,7 @@ import javax.swing.JTextArea;
 
 import knowledgebase.Belief;
 import knowledgebase.Justification;
+import knowledgebase.StatementSource;
 import net.miginfocom.swing.MigLayout;
 
 import org.apache.jena.rdf.model.Property;
@@ -71,7 +72,7 @@ public class Details extends BaseView
     }
 
     public void render(Belief b, String status,
-            List<Statement> beliefStatements, List<Statement> allStatements)
+            StatementSource beliefStatements, StatementSource allStatements)
     {
         controlsPanel.removeAll();
         controlsPanel.setVisible(true);
@@ -115,31 +116,30 @@ public class Details extends BaseView
         delete.addActionListener(e -> this.removeBelief(b));
         controlsPanel.add(delete, "skip");
         System.out.println("checking provenance...");
-        if (beliefStatements.size() > 0) {
+        if (!beliefStatements.isEmpty()) {
             provenance.setVisible(true);
 
             System.out.println("have reason for provenance");
-            for (Statement stmt : beliefStatements) {
-                if (stmt.getPredicate().equals(PROV.WAS_ATTRIBUTED_TO)) {
-                    Property p = ResourceFactory
-                            .createProperty("http://dbpedia.org/property/name");
-                    if (stmt.getObject().asResource().hasProperty(p)) {
-                        System.out.println(stmt.getObject());
-                        provenance.add(new JLabel(stmt.getObject().asResource()
-                                .getProperty(p).getObject().toString()));
-                    } else {
-                        provenance.add(new JLabel(stmt.getObject().toString()));
-                    }
-                    StmtIterator values = stmt.getSubject().listProperties(
-                            PROV.VALUE);
-                    while (values.hasNext()) {
-                        Statement n = values.next();
-                        if (n.getObject().isLiteral()) {
-                            provenance.add(new JLabel(
-                                    "<html><body><p style=\"width:240px; margin-left: 10px\">"
-                                            + n.getObject().toString()
-                                            + "</p></body></html>"));
-                        }
+            for (Statement stmt : beliefStatements
+                    .withPredicate(PROV.WAS_ATTRIBUTED_TO)) {
+                Property p = ResourceFactory
+                        .createProperty("http://dbpedia.org/property/name");
+                if (stmt.getObject().asResource().hasProperty(p)) {
+                    System.out.println(stmt.getObject());
+                    provenance.add(new JLabel(stmt.getObject().asResource()
+                            .getProperty(p).getObject().toString()));
+                } else {
+                    provenance.add(new JLabel(stmt.getObject().toString()));
+                }
+                StmtIterator values = stmt.getSubject().listProperties(
+                        PROV.VALUE);
+                while (values.hasNext()) {
+                    Statement n = values.next();
+                    if (n.getObject().isLiteral()) {
+                        provenance.add(new JLabel(
+                                "<html><body><p style=\"width:240px; margin-left: 10px\">"
+                                        + n.getObject().toString()
+                                        + "</p></body></html>"));
                     }
                 }
             }
@@ -153,7 +153,7 @@ public class Details extends BaseView
     }
 
     public void render(Justification j, List<Belief> inList,
-            List<Belief> outList, String status, List<Statement> kb)
+            List<Belief> outList, String status, StatementSource kb)
     {
         controlsPanel.removeAll();
 
@@ -210,7 +210,7 @@ public class Details extends BaseView
         }
     }
 
-    public void addToIn(Justification j, List<Statement> suggestions)
+    public void addToIn(Justification j, StatementSource suggestions)
     {
         String resource = promptForBelief(suggestions);
         if (resource != null && !resource.isEmpty()) {
@@ -227,7 +227,7 @@ public class Details extends BaseView
         }
     }
 
-    public void addToOut(Justification j, List<Statement> suggestions)
+    public void addToOut(Justification j, StatementSource suggestions)
     {
         String resource = promptForBelief(suggestions);
         if (resource != null && !resource.isEmpty()) {
@@ -244,7 +244,7 @@ public class Details extends BaseView
         }
     }
 
-    public void justifyBelief(Justification j, List<Statement> suggestions)
+    public void justifyBelief(Justification j, StatementSource suggestions)
     {
         String belief = promptForBelief(suggestions);
         if (belief != null && !belief.isEmpty()) {
@@ -9,14 +9,18 @@ import java.util.List;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.DefaultTableModel;
 
 import knowledgebase.Belief;
+import knowledgebase.MissionTime;
+import knowledgebase.StatementSource;
 import net.miginfocom.swing.MigLayout;
 
 import org.apache.jena.rdf.model.Statement;
@@ -27,6 +31,17 @@ import org.apache.jena.rdf.model.Statement;
  */
 public class Footer extends BaseView
 {
+    /**
+     * Number of annotations shown at a time.
+     */
+    private static final int PAGE = 100;
+
+    /**
+     * Window of mission elapsed time the annotations are shown for, as ground
+     * elapsed time ("55:50"). Kept between renders; empty for no bound.
+     */
+    private final JTextField from = new JTextField(6);
+    private final JTextField to = new JTextField(6);
 
     public Footer() {
         panel.setLayout(new MigLayout("wrap 1", "10[100%, fill]10",
@@ -41,8 +56,8 @@ public class Footer extends BaseView
         panel.removeAll();
     }
 
-    public void render(Belief b, List<Statement> beliefStatements,
-            List<Statement> allStatements)
+    public void render(Belief b, StatementSource beliefStatements,
+            StatementSource allStatements)
     {
         render();
 
@@ -54,10 +69,18 @@ public class Footer extends BaseView
         JButton newPred = new JButton("Add annotation");
         newPred.addActionListener(e -> this.addDoc(b, allStatements));
         controls.add(newPred);
+
+        controls.add(new JLabel("From"));
+        controls.add(from);
+        controls.add(new JLabel("To"));
+        controls.add(to);
+        JButton window = new JButton("Show window");
+        window.addActionListener(e -> this.setTimeWindow(b));
+        controls.add(window);
         controls.setBackground(new Color(0, 0, 0, 0));
         panel.add(controls);
 
-        if (beliefStatements.size() == 0)
+        if (beliefStatements.isEmpty())
             return;
 
         DefaultTableModel model = new DefaultTableModel();
@@ -103,9 +126,14 @@ public class Footer extends BaseView
         model.addColumn("Predicate");
         model.addColumn("Object");
 
-        for (Statement s : beliefStatements) {
-            model.addRow(new Object[] { s.getSubject().toString(),
-                    s.getPredicate().toString(), s.getObject().toString() });
+        int shown = loadPage(model, beliefStatements, 0);
+        if (shown == PAGE) {
+            JButton more = new JButton("More annotations");
+            more.addActionListener(e -> {
+                int n = loadPage(model, beliefStatements, model.getRowCount());
+                more.setEnabled(n == PAGE);
+            });
+            controls.add(more);
         }
         panel.add(new JScrollPane(table), "w 100%!");
         panel.validate();
@@ -113,7 +141,45 @@ public class Footer extends BaseView
 
     }
 
-    public void addDoc(Belief b, List<Statement> allStatements)
+    /**
+     * Add the page of annotations starting at offset to the table.
+     * 
+     * @return number of annotations added
+     */
+    private int loadPage(DefaultTableModel model, StatementSource statements,
+            int offset)
+    {
+        List<Statement> page = statements.page(offset, PAGE);
+        for (Statement s : page) {
+            model.addRow(new Object[] { s.getSubject().toString(),
+                    s.getPredicate().toString(), s.getObject().toString() });
+        }
+        return page.size();
+    }
+
+    public void setTimeWindow(Belief b)
+    {
+        long start, end;
+        try {
+            start = from.getText().trim().isEmpty() ? 0 : MissionTime
+                    .parse(from.getText());
+            end = to.getText().trim().isEmpty() ? Long.MAX_VALUE : MissionTime
+                    .parse(to.getText());
+            if (start > end) {
+                throw new IllegalArgumentException("From is after To");
+            }
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(panel, e.getMessage()
+                    + "\nUse ground elapsed time, such as 55:50 or 56:10:30.",
+                    "Time window", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        for (ViewSubscriber v : subscribers) {
+            v.handleTimeWindow(b, start, end);
+        }
+    }
+
+    public void addDoc(Belief b, StatementSource allStatements)
     {
         List<String> triple = promptForTriple(allStatements);
         if (triple.size() == 3) {
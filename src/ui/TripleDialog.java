@@ -16,22 +16,30 @@ import javax.swing.JLabel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
-import javax.swing.RowFilter;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 
+import knowledgebase.StatementSource;
 import net.miginfocom.swing.MigLayout;
 
 import org.apache.jena.rdf.model.Statement;
 
 /**
- * Asks for a triple from the user.
+ * Asks for a triple from the user. The statements to choose from are loaded a
+ * page at a time, and the filter searches them by the words they contain.
+ * Every page is read with an iterator of its own, so nothing is left reading
+ * the knowledge base while the dialog is open.
  *
  */
 public class TripleDialog extends JDialog
 {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Number of statements loaded at a time.
+     */
+    private static final int PAGE = 200;
+
     JLabel labelSubj = new JLabel("Subject");
     JLabel labelPred = new JLabel("Predicate");
     JLabel labelObj = new JLabel("Object");
@@ -42,13 +50,20 @@ public class TripleDialog extends JDialog
 
     String[] triple = new String[3];
 
+    /**
+     * Statements matching the filter.
+     */
+    private StatementSource shown;
+    private String query = "";
+    private final JButton more = new JButton("More");
+
     public TripleDialog(Frame owner, boolean modal,
-            List<Statement> potentialStatements) {
+            StatementSource potentialStatements) {
         super(owner, modal);
         init(potentialStatements);
     }
 
-    private void init(List<Statement> potentialStatements)
+    private void init(StatementSource potentialStatements)
     {
         this.setTitle("Add triple");
         this.setLayout(new MigLayout("ins 20, wrap 2", "[para]20[800lp, fill]"));
@@ -72,20 +87,20 @@ public class TripleDialog extends JDialog
         this.add(new JLabel("Filter:"));
         this.add(filterField, "w 200lp!");
 
+        // Search the statements again on every key, and show the first page
+        // of those that match.
         filterField.addKeyListener(new KeyAdapter() {
             public void keyReleased(KeyEvent e)
             {
                 JTextField textField = (JTextField) e.getSource();
                 String text = textField.getText();
-
-                RowFilter<DefaultTableModel, Object> rf = null;
-                // If current expression doesn't parse, don't update.
-                try {
-                    rf = RowFilter.regexFilter(textField.getText());
-                } catch (java.util.regex.PatternSyntaxException ex) {
+                if (text.equals(query)) {
                     return;
                 }
-                sorter.setRowFilter(rf);
+                query = text;
+                shown = potentialStatements.withText(text);
+                model.setRowCount(0);
+                more.setEnabled(loadPage(model) == PAGE);
             }
         });
 
@@ -108,10 +123,8 @@ public class TripleDialog extends JDialog
         model.addColumn("Predicate");
         model.addColumn("Object");
 
-        for (Statement s : potentialStatements) {
-            model.addRow(new Object[] { s.getSubject().toString(),
-                    s.getPredicate().toString(), s.getObject().toString() });
-        }
+        shown = potentialStatements;
+        int loaded = loadPage(model);
 
         table.setRowHeight(23);
         table.setDefaultEditor(Object.class, null);
@@ -123,12 +136,31 @@ public class TripleDialog extends JDialog
         close.addActionListener(e -> this.done());
         this.add(close, "w 100lp, h 20lp");
 
+        more.setEnabled(loaded == PAGE);
+        more.addActionListener(e -> more.setEnabled(loadPage(model) == PAGE));
+        this.add(more, "w 100lp!, h 20lp");
+
         getRootPane().setDefaultButton(close);
 
         this.validate();
         this.repaint();
     }
 
+    /**
+     * Add the page of statements following those in the table to the table.
+     * 
+     * @return number of statements added
+     */
+    private int loadPage(DefaultTableModel model)
+    {
+        List<Statement> page = shown.page(model.getRowCount(), PAGE);
+        for (Statement s : page) {
+            model.addRow(new Object[] { s.getSubject().toString(),
+                    s.getPredicate().toString(), s.getObject().toString() });
+        }
+        return page.size();
+    }
+
     private void done()
     {
         this.setVisible(false);
@@ -0,0 +1,39 @@
+package vocabs;
+import org.apache.jena.rdf.model.*;
+
+/**
+ * Vocabulary definitions from the Simple Event Model, for the terms used by
+ * the lifted spacelog.
+ */
+public class SEM {
+    /** <p>The RDF model that holds the vocabulary terms</p> */
+    private static Model m_model = ModelFactory.createDefaultModel();
+
+    /** <p>The namespace of the vocabulary as a string</p> */
+    public static final String NS = "http://semanticweb.cs.vu.nl/2009/11/sem/";
+
+    /** <p>The namespace of the vocabulary as a string</p>
+     *  @see #NS */
+    public static String getURI() {return NS;}
+
+    /** <p>The namespace of the vocabulary as a resource</p> */
+    public static final Resource NAMESPACE = m_model.createResource( NS );
+
+    public static final Model getSchema() { return m_model; }
+
+    /** <p>Time stamp of an event, as days, hours, minutes and seconds of mission
+     *  elapsed time, such as "02:08:23:06".</p>
+     */
+    public static final Property HAS_TIME_STAMP = m_model.createProperty( "http://semanticweb.cs.vu.nl/2009/11/sem/hasTimeStamp" );
+
+    public static final Property HAS_ACTOR = m_model.createProperty( "http://semanticweb.cs.vu.nl/2009/11/sem/hasActor" );
+
+    public static final Property HAS_PLACE = m_model.createProperty( "http://semanticweb.cs.vu.nl/2009/11/sem/hasPlace" );
+
+    public static final Resource ACTOR = m_model.createResource( "http://semanticweb.cs.vu.nl/2009/11/sem/Actor" );
+
+    public static final Resource EVENT = m_model.createResource( "http://semanticweb.cs.vu.nl/2009/11/sem/Event" );
+
+    public static final Resource PLACE = m_model.createResource( "http://semanticweb.cs.vu.nl/2009/11/sem/Place" );
+
+}
@@ -0,0 +1,100 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.junit.Test;
+
+/**
+ * A file is imported whole, or not at all.
+ *
+ */
+public class BulkImportTest
+{
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    @Test
+    public void commit()
+    {
+        Model model = ModelFactory.createDefaultModel();
+        ChangeLog log = new ChangeLog();
+        model.register(log);
+
+        BulkImport sink = new BulkImport(model.getGraph(), 10);
+        parse(sink, turtle(25));
+        assertEquals(sink.getCount(), 25);
+        assertTrue(model.isEmpty());
+
+        sink.commit();
+        assertEquals(model.size(), 25);
+        // Noted as a bulk change, without a copy of the triples.
+        assertTrue(log.hasBulkChange());
+        assertTrue(log.getAdded().isEmpty());
+    }
+
+    @Test
+    public void parseError()
+    {
+        Model model = ModelFactory.createDefaultModel();
+        BulkImport sink = new BulkImport(model.getGraph(), 10);
+        try {
+            parse(sink, turtle(25) + " <" + KB + "Broken");
+            fail("Parsed a broken file");
+        } catch (RiotException e) {
+            // The sink is dropped, so nothing is imported.
+        }
+        assertTrue(model.isEmpty());
+    }
+
+    @Test
+    public void importFile() throws IOException
+    {
+        Tms tms = new Tms(new Fuseki(DatasetStorage.memory()));
+        tms.importFile("src/data/example.n3");
+        Model before = ModelFactory.createDefaultModel().add(
+                tms.getKnowledgeBase());
+
+        File broken = File.createTempFile("broken", ".ttl");
+        try {
+            Files.write(broken.toPath(), (turtle(25) + " <" + KB + "Broken")
+                    .getBytes(StandardCharsets.UTF_8));
+            try {
+                tms.importFile(broken.getPath());
+                fail("Imported a broken file");
+            } catch (RiotException e) {
+                // Expected.
+            }
+        } finally {
+            broken.delete();
+        }
+        assertTrue(tms.getKnowledgeBase().isIsomorphicWith(before));
+    }
+
+    private static void parse(BulkImport sink, String turtle)
+    {
+        RDFDataMgr.parse(sink, new ByteArrayInputStream(turtle
+                .getBytes(StandardCharsets.UTF_8)), Lang.TURTLE);
+    }
+
+    private static String turtle(int n)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append("<" + KB + "Event" + i + "> <" + KB + "seq> " + i
+                    + " .\n");
+        }
+        return sb.toString();
+    }
+}
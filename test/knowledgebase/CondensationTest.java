@@ -0,0 +1,141 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import knowledgebase.Condensation.Scc;
+import vocabs.JTMS;
+
+/**
+ * Splits beliefs into strongly connected components, every one before those
+ * depending on it.
+ *
+ */
+public class CondensationTest
+{
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    private Model model;
+    private BeliefTable table;
+    private DependencyIndex index;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        table = new BeliefTable();
+        index = new DependencyIndex(model, j -> {
+        });
+        model.register(index);
+    }
+
+    @Test
+    public void chain()
+    {
+        justify("J1", "A", "B");
+        justify("J2", "B", "C");
+        List<Scc> order = condense("C", "B", "A");
+
+        assertEquals(names(order), Arrays.asList("A", "B", "C"));
+        for (Scc scc : order) {
+            assertFalse(scc.isCyclic());
+        }
+    }
+
+    @Test
+    public void loop()
+    {
+        justify("J1", "A", "B");
+        justify("J2", "B", "C");
+        justify("J3", "C", "B");
+        justify("J4", "C", "D");
+        List<Scc> order = condense("D", "C", "B", "A");
+
+        assertEquals(order.size(), 3);
+        assertEquals(names(order.subList(0, 1)), Arrays.asList("A"));
+        assertEquals(order.get(1).getBeliefs().size(), 2);
+        assertTrue(order.get(1).isCyclic());
+        assertEquals(names(order.subList(2, 3)), Arrays.asList("D"));
+        assertFalse(order.get(2).isCyclic());
+    }
+
+    @Test
+    public void selfLoop()
+    {
+        justify("J1", "A", "A");
+        List<Scc> order = condense("A");
+
+        assertEquals(order.size(), 1);
+        assertTrue(order.get(0).isCyclic());
+    }
+
+    @Test
+    public void outsideIgnored()
+    {
+        // B depends on A, but only B is condensed.
+        justify("J1", "A", "B");
+        justify("J2", "B", "A");
+        List<Scc> order = condense("B");
+
+        assertEquals(names(order), Arrays.asList("B"));
+        assertFalse(order.get(0).isCyclic());
+    }
+
+    @Test
+    public void longChain()
+    {
+        // Deeper than the call stack would allow, if it were recursive.
+        int n = 20000;
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            justify("J" + i, "B" + i, "B" + (i + 1));
+            names.add("B" + i);
+        }
+        List<Scc> order = condense(names.toArray(new String[0]));
+
+        assertEquals(order.size(), n);
+        assertEquals(names(order), names);
+    }
+
+    /**
+     * Have justification j, with antecedent in its IN list, justify
+     * consequent.
+     */
+    private void justify(String j, String antecedent, String consequent)
+    {
+        Resource jRes = model.createResource(KB + j);
+        model.add(jRes, JTMS.HAS_SUPPORT, model.createResource(KB + antecedent));
+        model.add(jRes, JTMS.JUSTIFIES, model.createResource(KB + consequent));
+    }
+
+    private List<Scc> condense(String... names)
+    {
+        List<Belief> beliefs = new ArrayList<Belief>();
+        for (String name : names) {
+            beliefs.add(table.internBelief(model.createResource(KB + name)));
+        }
+        return new Condensation(beliefs, table, index).getOrder();
+    }
+
+    private static List<String> names(List<Scc> order)
+    {
+        List<String> l = new ArrayList<String>();
+        for (Scc scc : order) {
+            for (Belief b : scc.getBeliefs()) {
+                l.add(b.getResource().getLocalName());
+            }
+        }
+        return l;
+    }
+}
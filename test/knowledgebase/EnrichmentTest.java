@@ -0,0 +1,160 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Fetches from a stand-in for dbpedia, which answers every query with the
+ * same single solution once it is let go.
+ *
+ */
+public class EnrichmentTest
+{
+    private static final String APOLLO = "http://apollo.nasa.gov/KB#Apollo13";
+
+    private static final String RESULTS = "<?xml version=\"1.0\"?>"
+            + "<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">"
+            + "<head><variable name=\"p\"/><variable name=\"o\"/></head>"
+            + "<results><result>"
+            + "<binding name=\"p\"><uri>http://www.w3.org/2000/01/rdf-schema#comment</uri></binding>"
+            + "<binding name=\"o\"><literal xml:lang=\"en\">A mission</literal></binding>"
+            + "</result></results></sparql>";
+
+    private HttpServer server;
+    private String endpoint;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile CountDownLatch answer = new CountDownLatch(0);
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/sparql", exchange -> {
+            requests.incrementAndGet();
+            try {
+                answer.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = RESULTS.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type",
+                    "application/sparql-results+xml");
+            try {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (IOException e) {
+                // The fetch gave up on the answer.
+            }
+        });
+        server.setExecutor(null);
+        server.start();
+        endpoint = "http://localhost:" + server.getAddress().getPort()
+                + "/sparql";
+        dir = Files.createTempDirectory("enrichment").toFile();
+    }
+
+    @After
+    public void tearDown()
+    {
+        answer.countDown();
+        server.stop(0);
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void coalesce() throws Exception
+    {
+        answer = new CountDownLatch(1);
+        Enrichment enrichment = new Enrichment(new QueryRegistry(), endpoint,
+                null);
+        CompletableFuture<Model> first = fetch(enrichment);
+        CompletableFuture<Model> second = fetch(enrichment);
+        assertSame(first, second);
+
+        answer.countDown();
+        Model statements = first.get(5, TimeUnit.SECONDS);
+        assertEquals(requests.get(), 1);
+        assertTrue(statements.contains(
+                ResourceFactory.createResource(APOLLO), null, "A mission",
+                "en"));
+
+        // Fetched, and now in the cache.
+        assertTrue(fetch(enrichment).isDone());
+        assertEquals(requests.get(), 1);
+        enrichment.shutdown();
+    }
+
+    @Test
+    public void timeout() throws Exception
+    {
+        answer = new CountDownLatch(1);
+        Enrichment enrichment = new Enrichment(new QueryRegistry(), endpoint,
+                null, 1000);
+        try {
+            fetch(enrichment).get(5, TimeUnit.SECONDS);
+            fail("The fetch did not time out");
+        } catch (ExecutionException e) {
+            // Given up, as the stand-in does not answer.
+        }
+
+        // A failed fetch is not cached, so it is fetched again.
+        answer.countDown();
+        fetch(enrichment).get(5, TimeUnit.SECONDS);
+        assertEquals(requests.get(), 2);
+        enrichment.shutdown();
+    }
+
+    @Test
+    public void cachePersists() throws Exception
+    {
+        File cacheFile = new File(dir, "dbpedia.cache");
+        Enrichment enrichment = new Enrichment(new QueryRegistry(), endpoint,
+                cacheFile);
+        Model fetched = fetch(enrichment).get(5, TimeUnit.SECONDS);
+        enrichment.shutdown();
+        assertTrue(cacheFile.exists());
+
+        // Read back from the cache, without asking the stand-in.
+        Enrichment reopened = new Enrichment(new QueryRegistry(), endpoint,
+                cacheFile);
+        CompletableFuture<Model> cached = fetch(reopened);
+        assertTrue(cached.isDone());
+        assertTrue(cached.get().isIsomorphicWith(fetched));
+        assertEquals(requests.get(), 1);
+        reopened.shutdown();
+    }
+
+    private CompletableFuture<Model> fetch(Enrichment enrichment)
+    {
+        return enrichment.fetch(APOLLO, Collections.emptyList());
+    }
+}
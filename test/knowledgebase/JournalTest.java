@@ -0,0 +1,127 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The model is rebuilt from the snapshot and every complete record.
+ *
+ */
+public class JournalTest
+{
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    private File dir;
+    private Model model;
+    private ChangeLog log;
+    private Journal journal;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("journal").toFile();
+        model = ModelFactory.createDefaultModel();
+        log = new ChangeLog();
+        model.register(log);
+        journal = new Journal(dir);
+    }
+
+    @After
+    public void tearDown()
+    {
+        journal.close();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void replay() throws IOException
+    {
+        Resource helium = model.createResource(KB + "Helium");
+        model.add(helium, RDFS.label, "Helium");
+        model.add(model.createResource(), RDFS.label, "Anonymous");
+        record();
+        model.remove(helium, RDFS.label, model.createLiteral("Helium"));
+        model.add(helium, RDFS.comment, "Pressurizes\nthe tanks");
+        record();
+
+        assertLoads(2);
+    }
+
+    @Test
+    public void tornRecord() throws IOException
+    {
+        model.add(model.createResource(KB + "Helium"), RDFS.label, "Helium");
+        record();
+        journal.close();
+
+        // A crash in the middle of the second record.
+        try (OutputStream out = new FileOutputStream(new File(dir,
+                "kb.journal"), true)) {
+            out.write(("+ <" + KB + "Fuel>\t<" + RDFS.label + ">\t\"Fu")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        journal = new Journal(dir);
+        assertLoads(1);
+
+        // Appended after the complete records, not after the torn one.
+        model.add(model.createResource(KB + "Ullage"), RDFS.label, "Ullage");
+        record();
+        assertLoads(2);
+    }
+
+    @Test
+    public void compact() throws IOException
+    {
+        model.add(model.createResource(KB + "Helium"), RDFS.label, "Helium");
+        record();
+        model.add(model.createResource(), RDFS.label, "Anonymous");
+        record();
+
+        journal.compact(model);
+        assertEquals(journal.getRecords(), 0);
+        assertFalse(new File(dir, "kb.journal").exists());
+        assertLoads(0);
+
+        model.add(model.createResource(KB + "Ullage"), RDFS.label, "Ullage");
+        record();
+        assertLoads(1);
+    }
+
+    private void record() throws IOException
+    {
+        journal.append(log);
+        log.clear();
+    }
+
+    /**
+     * Load the journal as if on startup, and compare it to the model.
+     */
+    private void assertLoads(int records) throws IOException
+    {
+        journal.close();
+        journal = new Journal(dir);
+        assertTrue(journal.exists());
+        Model loaded = journal.load();
+        assertEquals(journal.getRecords(), records);
+        assertTrue(loaded.isIsomorphicWith(model));
+    }
+}
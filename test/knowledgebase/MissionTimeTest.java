@@ -0,0 +1,65 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Mission times are parsed in every form Spacelog and the crew use, and
+ * nothing else is.
+ *
+ */
+public class MissionTimeTest
+{
+    @Test
+    public void forms()
+    {
+        assertEquals(MissionTime.parse("55:50"), 55 * 3600 + 50 * 60);
+        assertEquals(MissionTime.parse("56:23:06"), 56 * 3600 + 23 * 60 + 6);
+        assertEquals(MissionTime.parse(" 02:08:23:06 "),
+                MissionTime.parse("56:23:06"));
+        // Ground elapsed hours may pass a day.
+        assertEquals(MissionTime.parse("142:40:45"),
+                MissionTime.parse("05:22:40:45"));
+    }
+
+    @Test
+    public void format()
+    {
+        assertEquals(MissionTime.format(MissionTime.parse("02:08:23:06")),
+                "56:23:06");
+        assertEquals(MissionTime.format(0), "00:00:00");
+    }
+
+    @Test
+    public void outOfRange()
+    {
+        assertRejected("55:60");
+        assertRejected("56:23:60");
+        assertRejected("02:24:00:00");
+        assertRejected("02:08:60:00");
+    }
+
+    @Test
+    public void notATime()
+    {
+        assertRejected("");
+        assertRejected("55");
+        assertRejected("01:02:03:04:05");
+        assertRejected("-1:00");
+        assertRejected("55:5a");
+        assertRejected("55::00");
+        assertRejected("1234567890:00");
+    }
+
+    private static void assertRejected(String s)
+    {
+        try {
+            MissionTime.parse(s);
+            fail("Parsed \"" + s + "\"");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
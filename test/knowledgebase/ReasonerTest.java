@@ -0,0 +1,255 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Before;
+import org.junit.Test;
+
+import vocabs.JTMS;
+
+/**
+ * Incremental inference has to leave the reasoner as inferring everything
+ * again would.
+ *
+ */
+public class ReasonerTest
+{
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    private Fuseki db;
+    private Tms tms;
+    private Reasoner reasoner;
+
+    @Before
+    public void setUp()
+    {
+        db = new Fuseki(DatasetStorage.memory());
+        reasoner = new Reasoner(db);
+        tms = new Tms(db);
+        tms.importFile("src/data/example.n3");
+        reasoner.update(tms.getKnowledgeBase());
+    }
+
+    @Test
+    public void addToOut()
+    {
+        tms.addToOut(KB + "Helium", KB + "PassiveThermalControl");
+        assertSameAsFullInference("addToOut");
+    }
+
+    @Test
+    public void contradict()
+    {
+        tms.contradict(KB + "SPS");
+        assertSameAsFullInference("contradict");
+        tms.uncontradict(KB + "SPS");
+        assertSameAsFullInference("uncontradict");
+    }
+
+    @Test
+    public void removeJustification()
+    {
+        tms.removeJustification(justification(KB + "RCSSystems"));
+        assertSameAsFullInference("removeJustification");
+    }
+
+    @Test
+    public void addAndRemoveBelief()
+    {
+        tms.addBelief(KB + "Fuel");
+        tms.addToIn(KB + "Fuel", KB + "RCSSystems");
+        assertSameAsFullInference("addToIn");
+        tms.removeBelief(reasoner.getBelief(KB + "Fuel"));
+        assertSameAsFullInference("removeBelief");
+    }
+
+    @Test
+    public void newPremiseInOutList()
+    {
+        // The belief and the justification it opposes are new together.
+        tms.batch(() -> {
+            tms.addBelief(KB + "Fuel");
+            tms.premise(KB + "Fuel");
+            tms.addBelief(KB + "Ullage");
+            tms.addJustification(KB + "UllageJ");
+            tms.justifies(KB + "UllageJ", KB + "Ullage");
+            tms.addToOut(KB + "Fuel", KB + "UllageJ");
+        });
+        reasoner.update(tms.getKnowledgeBase());
+        assertTrue(reasoner.getBelief(KB + "Fuel").isPremise());
+        assertFalse(reasoner.getBelief(KB + "Ullage").getHeld());
+        assertSameAsFullInference("newPremiseInOutList");
+    }
+
+    @Test
+    public void unstableLoop()
+    {
+        // Odd holds only if it does not.
+        tms.batch(() -> {
+            tms.addBelief(KB + "Odd");
+            tms.addJustification(KB + "OddJ");
+            tms.justifies(KB + "OddJ", KB + "Odd");
+            tms.addToOut(KB + "Odd", KB + "OddJ");
+        });
+        reasoner.update(tms.getKnowledgeBase());
+
+        List<List<Belief>> loops = reasoner.getUnstableLoops();
+        assertEquals(loops.size(), 1);
+        assertEquals(loops.get(0).size(), 1);
+        assertEquals(loops.get(0).get(0).getResource().getURI(), KB + "Odd");
+
+        // Settled once Odd no longer opposes itself.
+        tms.removeFromOut(reasoner.getBelief(KB + "Odd"),
+                justification(KB + "OddJ"));
+        reasoner.update(tms.getKnowledgeBase());
+        assertTrue(reasoner.getUnstableLoops().isEmpty());
+    }
+
+    @Test
+    public void conflict()
+    {
+        // A justification can not be a belief as well.
+        tms.addBelief(KB + "RCSSystems");
+        reasoner.update(tms.getKnowledgeBase());
+        assertNotNull(reasoner.getLastReport());
+
+        Model kb = tms.getKnowledgeBase();
+        kb.remove(kb.createResource(KB + "RCSSystems"), RDF.type, JTMS.BELIEF);
+        reasoner.update(kb);
+        assertNull(reasoner.getLastReport());
+        assertSameAsFullInference("conflict");
+    }
+
+    @Test
+    public void staleBelief()
+    {
+        List<Belief> beliefs = reasoner.getBeliefs();
+        Belief last = null;
+        for (Belief b : beliefs) {
+            if (b.getHeld()) {
+                last = b;
+            }
+        }
+        tms.removeBelief(beliefs.get(0));
+        reasoner.update(tms.getKnowledgeBase());
+
+        // The beliefs were built again, and the id of last was handed on.
+        Belief current = reasoner.getBelief(last.getResource().getURI());
+        assertNotEquals(current.getId(), last.getId());
+        assertTrue(last.getHeld());
+        assertEquals(reasoner.getBeliefState(current),
+                reasoner.getBeliefState(last));
+        assertEquals(reasoner.getStatus(current), reasoner.getStatus(last));
+        reasoner.propagateBelief(last);
+        assertSameAsFullInference("propagating a stale belief");
+    }
+
+    @Test
+    public void randomEdits()
+    {
+        Random random = new Random(216);
+        for (int i = 0; i < 30; i++) {
+            List<Belief> beliefs = reasoner.getBeliefs();
+            List<Justification> justifications = reasoner.getJustifications();
+            if (beliefs.isEmpty() || justifications.isEmpty()) {
+                break;
+            }
+            Belief b = beliefs.get(random.nextInt(beliefs.size()));
+            Justification j = justifications.get(random
+                    .nextInt(justifications.size()));
+            String bIri = b.getResource().getURI();
+            String jIri = j.getResource().getURI();
+
+            String edit;
+            switch (random.nextInt(7)) {
+            case 0:
+                tms.addToIn(bIri, jIri);
+                edit = "addToIn";
+                break;
+            case 1:
+                tms.addToOut(bIri, jIri);
+                edit = "addToOut";
+                break;
+            case 2:
+                tms.removeFromIn(b, j);
+                edit = "removeFromIn";
+                break;
+            case 3:
+                tms.contradict(bIri);
+                edit = "contradict";
+                break;
+            case 4:
+                tms.premise(bIri);
+                edit = "premise";
+                break;
+            case 5:
+                tms.removeJustification(j);
+                edit = "removeJustification";
+                break;
+            default:
+                tms.removeBelief(b);
+                edit = "removeBelief";
+            }
+            assertSameAsFullInference("edit " + i + ", " + edit);
+        }
+    }
+
+    private Justification justification(String iri)
+    {
+        for (Justification j : reasoner.getJustifications()) {
+            if (j.getResource().getURI().equals(iri)) {
+                return j;
+            }
+        }
+        fail("No justification " + iri);
+        return null;
+    }
+
+    /**
+     * Update the reasoner incrementally, then infer everything again, and
+     * compare the stored reasoner graphs.
+     */
+    private void assertSameAsFullInference(String after)
+    {
+        Model kb = tms.getKnowledgeBase();
+        reasoner.update(kb);
+        Model incremental = db.getModel(Reasoner.Graph);
+
+        reasoner.setIncremental(false);
+        try {
+            reasoner.update(kb);
+        } finally {
+            reasoner.setIncremental(true);
+        }
+        Model full = db.getModel(Reasoner.Graph);
+
+        if (!incremental.isIsomorphicWith(full)) {
+            fail("After " + after + ", missing "
+                    + describe(full.difference(incremental)) + ", stale "
+                    + describe(incremental.difference(full)));
+        }
+    }
+
+    private static String describe(Model m)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(m.size()).append(" statements");
+        List<Resource> subjects = m.listSubjects().toList();
+        if (!subjects.isEmpty()) {
+            sb.append(" about ").append(subjects.get(0));
+        }
+        return sb.toString();
+    }
+}
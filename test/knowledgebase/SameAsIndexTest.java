@@ -0,0 +1,106 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Resources linked by owl:sameAs, in either direction and through chains,
+ * share their aliases and their canonical IRI.
+ *
+ */
+public class SameAsIndexTest
+{
+    private Model kb;
+    private Model missions;
+    private SameAsIndex index;
+
+    private Resource apollo13;
+    private Resource dbpedia;
+    private Resource nasa;
+    private Resource helium;
+
+    @Before
+    public void setUp()
+    {
+        kb = ModelFactory.createDefaultModel();
+        missions = ModelFactory.createDefaultModel();
+        apollo13 = kb.createResource("http://apollo.nasa.gov/KB#Apollo13");
+        dbpedia = kb.createResource("http://dbpedia.org/resource/Apollo_13");
+        nasa = kb.createResource("http://nasa.gov/missions/apollo13");
+        helium = kb.createResource("http://apollo.nasa.gov/KB#Helium");
+
+        Supplier<Model> k = () -> kb;
+        Supplier<Model> m = () -> missions;
+        index = new SameAsIndex(Arrays.asList(k, m));
+    }
+
+    @Test
+    public void union()
+    {
+        kb.add(dbpedia, OWL.sameAs, apollo13);
+        // Linked in the other direction, in another model.
+        missions.add(apollo13, OWL.sameAs, nasa);
+
+        for (Resource r : Arrays.asList(apollo13, dbpedia, nasa)) {
+            assertAliases(r, apollo13, dbpedia, nasa);
+            assertEquals(index.getCanonical(r), apollo13);
+        }
+        assertAliases(helium, helium);
+        assertEquals(index.getCanonical(helium), helium);
+    }
+
+    @Test
+    public void followsLinks()
+    {
+        assertAliases(apollo13, apollo13);
+
+        // Added after the index was built.
+        kb.add(nasa, OWL.sameAs, dbpedia);
+        kb.add(dbpedia, OWL.sameAs, apollo13);
+        assertAliases(nasa, apollo13, dbpedia, nasa);
+        assertEquals(index.getCanonical(nasa), apollo13);
+    }
+
+    @Test
+    public void rebuildAfterRemoval()
+    {
+        kb.add(dbpedia, OWL.sameAs, apollo13);
+        kb.add(nasa, OWL.sameAs, dbpedia);
+        assertAliases(nasa, apollo13, dbpedia, nasa);
+
+        kb.remove(dbpedia, OWL.sameAs, apollo13);
+        assertAliases(apollo13, apollo13);
+        assertAliases(nasa, dbpedia, nasa);
+        assertEquals(index.getCanonical(nasa), dbpedia);
+    }
+
+    @Test
+    public void newModel()
+    {
+        kb.add(dbpedia, OWL.sameAs, apollo13);
+        assertAliases(apollo13, apollo13, dbpedia);
+
+        // The source supplies a model without the link.
+        kb = ModelFactory.createDefaultModel();
+        assertAliases(apollo13, apollo13);
+    }
+
+    private void assertAliases(Resource r, Resource... expected)
+    {
+        List<Resource> aliases = index.getAliases(r);
+        assertEquals(aliases.size(), expected.length);
+        assertEquals(new HashSet<Resource>(aliases),
+                new HashSet<Resource>(Arrays.asList(expected)));
+    }
+}
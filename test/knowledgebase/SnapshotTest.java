@@ -0,0 +1,134 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A reasoner restored from a snapshot is the reasoner that wrote it, as long
+ * as the knowledge base is the same.
+ *
+ */
+public class SnapshotTest
+{
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    private File dir;
+    private File file;
+    private Tms tms;
+    private Reasoner reasoner;
+    private Fuseki db;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("snapshot").toFile();
+        file = new File(dir, "reasoner.snapshot");
+        db = new Fuseki(DatasetStorage.memory());
+        reasoner = new Reasoner(db);
+        tms = new Tms(db);
+        tms.importFile("src/data/example.n3");
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void roundTrip()
+    {
+        Model kb = tms.getKnowledgeBase();
+        reasoner.update(kb);
+        assertTrue(reasoner.saveSnapshot(file, kb));
+
+        Fuseki other = new Fuseki(DatasetStorage.memory());
+        Reasoner restored = new Reasoner(other);
+        assertTrue(restored.restoreSnapshot(file, kb));
+
+        assertEquals(describe(restored.getBeliefs()),
+                describe(reasoner.getBeliefs()));
+        assertTrue(other.getModel(Reasoner.Graph).isIsomorphicWith(
+                db.getModel(Reasoner.Graph)));
+    }
+
+    @Test
+    public void changedKnowledgeBase()
+    {
+        Model kb = tms.getKnowledgeBase();
+        reasoner.update(kb);
+        assertTrue(reasoner.saveSnapshot(file, kb));
+
+        kb.add(kb.createResource(KB + "Helium"), RDFS.comment, "Changed");
+        assertFalse(new Reasoner(new Fuseki(DatasetStorage.memory()))
+                .restoreSnapshot(file, kb));
+    }
+
+    @Test
+    public void notCurrent()
+    {
+        Model kb = tms.getKnowledgeBase();
+        reasoner.update(kb);
+        tms.addBelief(KB + "Fuel");
+        assertFalse(reasoner.saveSnapshot(file, kb));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void blankNodes()
+    {
+        Model kb = tms.getKnowledgeBase();
+        assertFalse(Snapshot.hasBlankNodes(kb));
+        kb.add(kb.createResource(), RDFS.label, "Anonymous");
+        reasoner.update(kb);
+        assertTrue(Snapshot.hasBlankNodes(kb));
+        assertFalse(reasoner.saveSnapshot(file, kb));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void fingerprint()
+    {
+        Model a = ModelFactory.createDefaultModel();
+        Model b = ModelFactory.createDefaultModel();
+        Resource helium = a.createResource(KB + "Helium");
+        Resource fuel = a.createResource(KB + "Fuel");
+        a.add(helium, RDFS.label, "Helium").add(fuel, OWL.sameAs, helium);
+        b.add(fuel, OWL.sameAs, helium).add(helium, RDFS.label, "Helium");
+        assertEquals(Snapshot.fingerprint(a), Snapshot.fingerprint(b));
+
+        // Only the language of a literal differs.
+        b.remove(helium, RDFS.label, b.createLiteral("Helium"));
+        b.add(helium, RDFS.label, "Helium", "en");
+        assertNotEquals(Snapshot.fingerprint(a), Snapshot.fingerprint(b));
+    }
+
+    private static List<String> describe(List<Belief> beliefs)
+    {
+        List<String> l = new ArrayList<String>();
+        for (Belief b : beliefs) {
+            l.add(b.getId() + " " + b.getResource() + " " + b.getHeld());
+        }
+        return l;
+    }
+}
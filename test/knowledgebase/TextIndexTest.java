@@ -0,0 +1,115 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Searches by the start of words, as the user types them.
+ *
+ */
+public class TextIndexTest
+{
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    private Model model;
+    private TextIndex index;
+    private Statement apollo13;
+    private Statement helium;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        Resource mission = model.createResource(KB + "Apollo13");
+        apollo13 = model.createStatement(mission, RDFS.label,
+                "Apollo 13 mission");
+        helium = model.createStatement(model.createResource(KB + "Helium"),
+                RDFS.comment, "Pressurizes the tanks");
+        model.add(apollo13).add(helium);
+
+        Supplier<Model> source = () -> model;
+        index = new TextIndex(Collections.singletonList(source));
+    }
+
+    @Test
+    public void prefix()
+    {
+        assertEquals(search("apo"), Collections.singletonList(apollo13));
+        assertEquals(search("Pressur tank"), Collections.singletonList(helium));
+        assertEquals(search("apollo he"), Collections.emptyList());
+    }
+
+    @Test
+    public void eachOnce()
+    {
+        // "apollo13" and "apollo" both start with "apo".
+        assertEquals(candidates("apo").size(), 1);
+    }
+
+    @Test
+    public void localNamesOnly()
+    {
+        // Every statement has the scheme and host of KB.
+        assertTrue(search("nasa").isEmpty());
+        assertTrue(search("http").isEmpty());
+        assertEquals(search("label"), Collections.singletonList(apollo13));
+    }
+
+    @Test
+    public void followsChanges()
+    {
+        model.remove(apollo13);
+        assertTrue(search("apo").isEmpty());
+        model.add(apollo13);
+        assertEquals(search("apo"), Collections.singletonList(apollo13));
+    }
+
+    @Test
+    public void lazy()
+    {
+        for (int i = 0; i < 1000; i++) {
+            model.add(model.createResource(KB + "Event" + i), RDFS.label,
+                    "event");
+        }
+        Iterator<Statement> it = index.candidates("ev");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(it.hasNext());
+            it.next();
+        }
+        assertEquals(new StatementSource(Collections.singletonList(
+                (Supplier<Model>) () -> model), index).withText("ev")
+                .page(990, 20).size(), 10);
+    }
+
+    private List<Statement> search(String query)
+    {
+        List<Statement> found = new ArrayList<Statement>();
+        for (Statement s : candidates(query)) {
+            if (TextIndex.matches(s, query)) {
+                found.add(s);
+            }
+        }
+        return found;
+    }
+
+    private List<Statement> candidates(String query)
+    {
+        List<Statement> l = new ArrayList<Statement>();
+        index.candidates(query).forEachRemaining(l::add);
+        return l;
+    }
+}
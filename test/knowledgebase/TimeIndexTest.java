@@ -0,0 +1,84 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import vocabs.SEM;
+
+/**
+ * Events are found by the window their time stamp falls in, and move when
+ * they are stamped again.
+ *
+ */
+public class TimeIndexTest
+{
+    private static final String LOG = "http://apollo.nasa.gov/log#";
+
+    private Model model;
+    private TimeIndex index;
+    private Resource oxygen;
+    private Resource problem;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        oxygen = model.createResource(LOG + "OxygenTankStir");
+        problem = model.createResource(LOG + "HoustonWeHaveAProblem");
+        model.add(oxygen, SEM.HAS_TIME_STAMP, "02:07:53:18");
+        model.add(problem, SEM.HAS_TIME_STAMP, "55:55:35");
+        model.add(model.createResource(LOG + "Unstamped"),
+                SEM.HAS_TIME_STAMP, "not a time");
+
+        Supplier<Model> source = () -> model;
+        index = new TimeIndex(Collections.singletonList(source));
+    }
+
+    @Test
+    public void window()
+    {
+        assertEquals(index.getEvents(0, Long.MAX_VALUE),
+                Arrays.asList(oxygen, problem));
+        assertEquals(index.getEvents(MissionTime.parse("55:55"),
+                MissionTime.parse("56:00")), Arrays.asList(problem));
+        // Both ends are in the window.
+        long t = MissionTime.parse("55:53:18");
+        assertEquals(index.getEvents(t, t), Arrays.asList(oxygen));
+        assertTrue(index.getEvents(t + 1, t).isEmpty());
+        assertEquals(index.getTime(model.createResource(LOG + "Unstamped")),
+                -1);
+    }
+
+    @Test
+    public void restamp()
+    {
+        assertEquals(index.getTime(problem), MissionTime.parse("55:55:35"));
+
+        // Stamped again, then the old stamp is removed.
+        model.add(problem, SEM.HAS_TIME_STAMP, "55:55:20");
+        long t = MissionTime.parse("55:55:20");
+        assertEquals(index.getTime(problem), t);
+        assertEquals(index.getEvents(t, t), Arrays.asList(problem));
+        assertTrue(index.getEvents(t + 1, Long.MAX_VALUE).isEmpty());
+
+        model.remove(problem, SEM.HAS_TIME_STAMP,
+                model.createLiteral("55:55:35"));
+        assertEquals(index.getTime(problem), t);
+
+        model.remove(problem, SEM.HAS_TIME_STAMP,
+                model.createLiteral("55:55:20"));
+        assertEquals(index.getTime(problem), -1);
+        assertEquals(index.getEvents(0, Long.MAX_VALUE),
+                Arrays.asList(oxygen));
+    }
+}
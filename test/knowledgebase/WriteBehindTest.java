@@ -0,0 +1,130 @@
+package knowledgebase;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.update.UpdateRequest;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Whatever the db failed to store is sent again, in order, on the next flush.
+ *
+ */
+public class WriteBehindTest
+{
+    private static final String GRAPH = "http://apollo.nasa.gov/KB";
+    private static final String KB = "http://apollo.nasa.gov/KB#";
+
+    /**
+     * Fails every write while failing is set.
+     */
+    private static class FlakyStorage extends DatasetStorage
+    {
+        volatile boolean failing;
+
+        FlakyStorage() {
+            super(DatasetFactory.createTxnMem());
+        }
+
+        @Override
+        public void putModel(String graph, Model m)
+        {
+            check();
+            super.putModel(graph, m);
+        }
+
+        @Override
+        public void update(UpdateRequest request)
+        {
+            check();
+            super.update(request);
+        }
+
+        private void check()
+        {
+            if (failing) {
+                throw new RuntimeException("The db is down");
+            }
+        }
+    }
+
+    private FlakyStorage storage;
+    private Fuseki db;
+    private Model model;
+    private WriteBehind writeBehind;
+
+    @Before
+    public void setUp()
+    {
+        storage = new FlakyStorage();
+        db = new Fuseki(storage);
+        model = ModelFactory.createDefaultModel();
+        // Long enough that only flushes send anything.
+        writeBehind = new WriteBehind(db, GRAPH, model, 60000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        storage.failing = false;
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    public void retryUpdates()
+    {
+        Resource helium = model.createResource(KB + "Helium");
+        model.add(helium, RDFS.label, "Helium");
+        writeBehind.changed();
+
+        storage.failing = true;
+        assertFalse(writeBehind.flushAndWait());
+        assertTrue(db.getModel(GRAPH).isEmpty());
+
+        // Sent after the update that failed, so the removal wins.
+        model.remove(helium, RDFS.label, model.createLiteral("Helium"));
+        model.add(helium, RDFS.comment, "Pressurizes the tanks");
+        writeBehind.changed();
+
+        storage.failing = false;
+        assertTrue(writeBehind.flushAndWait());
+        assertTrue(db.getModel(GRAPH).isIsomorphicWith(model));
+    }
+
+    @Test
+    public void retrySnapshot()
+    {
+        // A blank node has the whole model put.
+        model.add(model.createResource(), RDFS.label, "Anonymous");
+        writeBehind.changed();
+
+        storage.failing = true;
+        assertFalse(writeBehind.flushAndWait());
+
+        storage.failing = false;
+        model.add(model.createResource(KB + "Helium"), RDFS.label, "Helium");
+        writeBehind.changed();
+        assertTrue(writeBehind.flushAndWait());
+        assertTrue(db.getModel(GRAPH).isIsomorphicWith(model));
+    }
+
+    @Test
+    public void shutdownReports()
+    {
+        model.add(model.createResource(KB + "Helium"), RDFS.label, "Helium");
+        writeBehind.changed();
+
+        storage.failing = true;
+        assertFalse(writeBehind.shutdown());
+        writeBehind = null;
+    }
+}